@@ -1,5 +1,14 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
+import eval.Evaluator;
+import record.GameRecord;
+import record.GameRecordWriter;
+import search.RewardMode;
+import search.SharedTreeSearch;
+import search.TimeManager;
+import search.Warmup;
 import state.SushiGoState;
 
 /**
@@ -10,11 +19,98 @@ import state.SushiGoState;
  */
 public class SushiProMain {
 
-	public static void main(final String[] args) {
+	/**
+	 * Options:
+	 * <ul>
+	 * <li>-evaluator file: the weights used to score rollouts that are cut
+	 * off</li>
+	 * <li>-cutoff tricks: cut rollouts off after this many tricks (or at the end of
+	 * the round)</li>
+	 * <li>-threads n: search with n threads that share one set of move
+	 * statistics</li>
+	 * <li>-record file: append a record of the game to this file</li>
+	 * <li>-chance n: use variance-reduced chance sampling in the shared tree
+	 * search (n shared pairs of deals, or 0 for no limit, requires -threads 2 or
+	 * more, or -time)</li>
+	 * <li>-reward mode: how the shared tree search scores finished rollouts
+	 * (win_loss, score_margin or rank, anything but win_loss requires -threads 2
+	 * or more, or -time)</li>
+	 * <li>-model true: learn how each opponent plays and have them play that way
+	 * in rollouts</li>
+	 * <li>-time seconds: the AI's thinking time for the whole game, spread over
+	 * its decisions by how much they matter (instead of 60 seconds a move)</li>
+	 * <li>-warmup millis: play self-play games and short searches for this long
+	 * before the game starts, so the first search runs compiled code</li>
+	 * </ul>
+	 */
+	public static void main(final String[] args) throws IOException {
+		Evaluator evaluator = new Evaluator();
+		int rolloutCutoff = 0;
+		int numThreads = 1;
+		String recordFile = null;
+		int numSharedSamples = -1;
+		RewardMode rewardMode = RewardMode.WIN_LOSS;
+		boolean opponentModeling = false;
+		TimeManager timeManager = null;
+		long warmupMillis = 0;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-evaluator")) {
+				evaluator = Evaluator.load(Paths.get(args[i + 1]));
+			} else if (args[i].equals("-cutoff")) {
+				rolloutCutoff = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-threads")) {
+				numThreads = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-record")) {
+				recordFile = args[i + 1];
+			} else if (args[i].equals("-chance")) {
+				numSharedSamples = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-reward")) {
+				rewardMode = RewardMode.valueOf(args[i + 1].toUpperCase());
+			} else if (args[i].equals("-model")) {
+				opponentModeling = Boolean.parseBoolean(args[i + 1]);
+			} else if (args[i].equals("-time")) {
+				timeManager = new TimeManager(Long.parseLong(args[i + 1]) * 1000);
+			} else if (args[i].equals("-warmup")) {
+				warmupMillis = Long.parseLong(args[i + 1]);
+			} else {
+				System.out.println("Unknown option " + args[i]);
+				return;
+			}
+		}
+
+		// the single threaded search plays without a time budget through MCTS, which
+		// has no chance sampling and only backs up wins and losses
+		final boolean sharedTree = timeManager != null || numThreads > 1;
+
+		if (numSharedSamples >= 0 && !sharedTree) {
+			System.out.println("-chance only applies to the shared tree search (use -threads 2 or more, or -time)");
+			return;
+		}
+
+		if (rewardMode != RewardMode.WIN_LOSS && !sharedTree) {
+			System.out.println("-reward only applies to the shared tree search (use -threads 2 or more, or -time)");
+			return;
+		}
+
+		SushiGoState.setRolloutCutoff(rolloutCutoff, evaluator);
+		SushiGoState.setOpponentModeling(opponentModeling);
+		SharedTreeSearch.setChanceSampling(numSharedSamples >= 0, numSharedSamples);
+		SharedTreeSearch.setRewardMode(rewardMode);
+
+		// warm up the search the game will use, once everything is configured (MCTS
+		// only searches in whole seconds)
+		if (warmupMillis > 0 && sharedTree) {
+			Warmup.run(warmupMillis, numThreads);
+		} else if (warmupMillis > 0) {
+			Warmup.run(warmupMillis, warmupState -> MCTS.search(warmupState, 1, 1));
+		}
+
 		final Scanner in = new Scanner(System.in);
 
 		int numPlayers = 0;
 		SushiGoState state = null;
+		GameRecord record = null;
 		boolean tryAgain = true;
 
 		// game setup
@@ -31,7 +127,8 @@ public class SushiProMain {
 			}
 
 			try {
-				state = new SushiGoState(numPlayers, in);
+				record = recordFile == null ? null : new GameRecord(numPlayers);
+				state = new SushiGoState(numPlayers, in, record);
 			} catch (final IllegalArgumentException e) {
 				System.out.println(e.getMessage());
 				tryAgain = true;
@@ -43,7 +140,19 @@ public class SushiProMain {
 		// gameplay loop
 		while (state.getWinningPlayers().isEmpty()) {
 			System.out.println("AI is thinking...");
-			state = (SushiGoState) MCTS.search(state, 60, 1);
+			if (timeManager != null) {
+				state = timeManager.search(state, numThreads);
+			} else if (numThreads > 1) {
+				state = (SushiGoState) SharedTreeSearch.search(state, 60, numThreads);
+			} else {
+				state = (SushiGoState) MCTS.search(state, 60, 1);
+			}
+
+			if (record != null) {
+				record.onPlay(0, state.getLastAiPlay());
+				state.setObserver(record);
+			}
+
 			System.out.println(state);
 			state.getHumanPlayersMoves(in);
 			System.out.println(state);
@@ -52,5 +161,13 @@ public class SushiProMain {
 		in.close();
 
 		System.out.println("Winning players = " + state.getWinningPlayers());
+
+		if (record != null) {
+			record.finish(state);
+
+			try (GameRecordWriter writer = new GameRecordWriter(Paths.get(recordFile))) {
+				writer.append(record);
+			}
+		}
 	}
 }
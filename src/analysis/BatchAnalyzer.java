@@ -0,0 +1,118 @@
+package analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import search.MoveStatistics;
+import search.SharedTreeSearch;
+import state.Positions;
+import state.SushiGoState;
+
+/**
+ * This class analyzes a file of positions (see {@link Positions}) in parallel.
+ * Each position is searched on a single thread for a fixed budget, and the
+ * positions are spread over a fixed pool of workers, which gets the most
+ * positions per second out of the available cores. Results are printed as soon
+ * as each position finishes, so they may be out of order.
+ * 
+ * @author Aaron Tetens
+ */
+public class BatchAnalyzer {
+
+	/**
+	 * Usage: BatchAnalyzer positionsFile [millisPerPosition [numWorkers]]
+	 */
+	public static void main(final String[] args) throws IOException, InterruptedException {
+		if (args.length < 1) {
+			System.out.println("Usage: BatchAnalyzer positionsFile [millisPerPosition [numWorkers]]");
+			return;
+		}
+
+		final long millisPerPosition = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+		final int numWorkers = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+
+		final ExecutorService workers = Executors.newFixedThreadPool(numWorkers);
+
+		// only read ahead a little so huge files are never held in memory
+		final Semaphore pending = new Semaphore(2 * numWorkers);
+
+		try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]))) {
+			String line;
+			int lineNumber = 0;
+
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+
+				if (line.trim().isEmpty() || line.trim().startsWith("#")) {
+					continue;
+				}
+
+				final int positionNumber = lineNumber;
+				final String position = line;
+
+				pending.acquire();
+				workers.execute(() -> {
+					try {
+						print(positionNumber, analyze(position, millisPerPosition));
+					} catch (final IllegalArgumentException e) {
+						print(positionNumber, e.getMessage());
+					} catch (final RuntimeException e) {
+						// every position still gets exactly one line of output
+						print(positionNumber, "Failed to analyze the position: " + e);
+					} finally {
+						pending.release();
+					}
+				});
+			}
+		}
+
+		workers.shutdown();
+		workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param position
+	 *            The position to analyze
+	 * @param millis
+	 *            How long to search the position for
+	 * @return Every move of the position with its statistics, most visited first
+	 * @throws IllegalArgumentException
+	 *             If the position is not valid or has no moves
+	 */
+	public static String analyze(final String position, final long millis) throws IllegalArgumentException {
+		final SushiGoState state = Positions.parse(position);
+		final List<MoveStatistics> moves = SharedTreeSearch.analyze(state, millis, 1);
+
+		if (moves.isEmpty()) {
+			throw new IllegalArgumentException("Tried to analyze a position where the AI cannot play");
+		}
+
+		final StringBuilder sb = new StringBuilder();
+
+		for (final MoveStatistics move : moves) {
+			sb.append(sb.length() == 0 ? "" : " | ");
+			sb.append(((SushiGoState) move.getState()).getLastAiPlay());
+			sb.append(String.format(" (visits = %d, value = %.3f)", move.getVisits(), move.getMeanValue()));
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * @param positionNumber
+	 *            The line number of the position in the file
+	 * @param result
+	 *            The result of the analysis
+	 */
+	private static synchronized void print(final int positionNumber, final String result) {
+		System.out.println("Position " + positionNumber + ": " + result);
+	}
+}
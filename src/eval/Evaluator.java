@@ -0,0 +1,206 @@
+package eval;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import score.Scoring;
+import state.Player;
+
+/**
+ * This class is a linear evaluation function that estimates each player's final
+ * score from a position in the middle of the game. It is used to score rollouts
+ * that are cut off before the end of the game.
+ * 
+ * @author Aaron Tetens
+ */
+public class Evaluator {
+
+	public static final int NUM_FEATURES = 9;
+
+	// weights fit from random self-play, used until a trained model is loaded
+	private static final double[] DEFAULT_WEIGHTS = { -1.2, 10.2, 0.3, 0.5, 0.0, 0.8, 0.8, 1.8, 0.8 };
+
+	// every rollout that is cut off is scored, so each thread reuses one array for
+	// the features instead of allocating it every time
+	private static final ThreadLocal<double[]> FEATURES = ThreadLocal.withInitial(() -> new double[NUM_FEATURES]);
+
+	private final double[] weights;
+
+	public Evaluator() {
+		this(DEFAULT_WEIGHTS);
+	}
+
+	/**
+	 * @param weights
+	 *            The weight of each feature, see {@link #extractFeatures}
+	 * @throws IllegalArgumentException
+	 *             If the wrong number of weights is given
+	 */
+	public Evaluator(final double[] weights) throws IllegalArgumentException {
+		if (weights.length != NUM_FEATURES) {
+			throw new IllegalArgumentException(
+					"Tried to create an evaluator with " + weights.length + " weights (" + NUM_FEATURES + " required)");
+		}
+
+		this.weights = Arrays.copyOf(weights, weights.length);
+	}
+
+	/**
+	 * @param file
+	 *            A file written by {@link #save}
+	 * @return The evaluator stored in the given file
+	 * @throws IOException
+	 *             If the file could not be read
+	 * @throws IllegalArgumentException
+	 *             If the file does not contain a valid set of weights
+	 */
+	public static Evaluator load(final Path file) throws IOException, IllegalArgumentException {
+		final List<Double> weights = new ArrayList<>();
+
+		for (final String line : Files.readAllLines(file)) {
+			if (line.trim().isEmpty()) {
+				continue;
+			}
+
+			try {
+				weights.add(Double.parseDouble(line.trim()));
+			} catch (final NumberFormatException e) {
+				throw new IllegalArgumentException("Tried to load weight " + line + " (not a number)");
+			}
+		}
+
+		final double[] weightsArray = new double[weights.size()];
+		for (int i = 0; i < weightsArray.length; i++) {
+			weightsArray[i] = weights.get(i);
+		}
+
+		return new Evaluator(weightsArray);
+	}
+
+	/**
+	 * @param file
+	 *            The file to write the weights to (one weight per line)
+	 * @throws IOException
+	 *             If the file could not be written
+	 */
+	public void save(final Path file) throws IOException {
+		final List<String> lines = new ArrayList<>();
+		for (final double weight : this.weights) {
+			lines.add(Double.toString(weight));
+		}
+
+		Files.write(file, lines);
+	}
+
+	/**
+	 * @param players
+	 *            The players in the game
+	 * @param currentRound
+	 *            The round that is currently being played (the round after the
+	 *            last scored round)
+	 * @return The estimated final score of each player
+	 */
+	public double[] estimateFinalScores(final Player[] players, final int currentRound) {
+		final double[] finalScores = new double[players.length];
+		this.estimateFinalScores(players, currentRound, finalScores);
+
+		return finalScores;
+	}
+
+	/**
+	 * @param players
+	 *            The players in the game
+	 * @param currentRound
+	 *            The round that is currently being played (the round after the
+	 *            last scored round)
+	 * @param finalScores
+	 *            The array to write the estimated final score of each player to
+	 */
+	public void estimateFinalScores(final Player[] players, final int currentRound, final double[] finalScores) {
+		final double[] features = FEATURES.get();
+
+		for (int i = 0; i < players.length; i++) {
+			extractFeatures(players, i, currentRound, features);
+
+			double estimate = players[i].getScore();
+			for (int j = 0; j < NUM_FEATURES; j++) {
+				estimate += this.weights[j] * features[j];
+			}
+
+			finalScores[i] = estimate;
+		}
+	}
+
+	/**
+	 * Fills in the features for a single player. The features are:
+	 * <ol start="0">
+	 * <li>bias</li>
+	 * <li>rounds left to score (including the current round)</li>
+	 * <li>partial sashimi sets</li>
+	 * <li>partial tempura sets</li>
+	 * <li>dumplings</li>
+	 * <li>unused wasabi</li>
+	 * <li>maki lead over the best opponent</li>
+	 * <li>pudding differential to the average opponent</li>
+	 * <li>points already locked in by this round's field</li>
+	 * </ol>
+	 * 
+	 * @param players
+	 *            The players in the game
+	 * @param playerIndex
+	 *            The index of the player to extract features for
+	 * @param currentRound
+	 *            The round that is currently being played
+	 * @param features
+	 *            The array to write the features into (length
+	 *            {@link #NUM_FEATURES})
+	 */
+	public static void extractFeatures(final Player[] players, final int playerIndex, final int currentRound,
+			final double[] features) {
+
+		final Player player = players[playerIndex];
+
+		int numSashimi = 0;
+		int numTempura = 0;
+		int numDumplings = 0;
+		int numWasabi = 0;
+
+		for (final String card : player.getField()) {
+			if (card.equals("S")) {
+				numSashimi++;
+			} else if (card.equals("T")) {
+				numTempura++;
+			} else if (card.equals("D")) {
+				numDumplings++;
+			} else if (card.equals("W")) {
+				numWasabi++;
+			} else if (card.endsWith("N") && numWasabi > 0) {
+				numWasabi--;
+			}
+		}
+
+		int mostOpponentMaki = 0;
+		int opponentPuddings = 0;
+
+		for (int i = 0; i < players.length; i++) {
+			if (i != playerIndex) {
+				mostOpponentMaki = Math.max(mostOpponentMaki, players[i].getNumMaki());
+				opponentPuddings += players[i].getNumPuddings();
+			}
+		}
+
+		features[0] = 1.0;
+		features[1] = Math.max(0, 4 - currentRound);
+		features[2] = numSashimi % 3;
+		features[3] = numTempura % 2;
+		features[4] = numDumplings;
+		features[5] = numWasabi;
+		features[6] = player.getNumMaki() - mostOpponentMaki;
+		features[7] = player.getNumPuddings() - (double) opponentPuddings / (players.length - 1);
+		features[8] = Scoring.scoreField(player.getField());
+	}
+}
@@ -0,0 +1,348 @@
+package eval;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import record.GameRecord;
+import record.GameRecordReader;
+import record.GameRecordWriter;
+import score.ScoreBatch;
+import state.Player;
+import state.SushiGoState;
+
+/**
+ * This class fits the weights of an {@link Evaluator} offline from self-play
+ * games. Every trick of every game is recorded, and once the game is over each
+ * recorded position is labeled with the points each player went on to score.
+ * The weights are then fit to those labels with least squares. Games are played
+ * in batches that score their rounds together, see {@link ScoreBatch}. The
+ * weights can also be fit from saved game records (self-play or real games),
+ * which are replayed trick by trick in the same way.
+ * 
+ * @author Aaron Tetens
+ */
+public class EvaluatorTrainer {
+
+	// small ridge penalty so that features that never vary do not make the system
+	// singular
+	private static final double RIDGE = 1e-3;
+
+	// the number of self-play games played at once (split between the player
+	// counts)
+	private static final int BATCH_SIZE = 1024;
+
+	// X^T X and X^T y of all of the samples seen so far
+	private final double[][] xtx;
+	private final double[] xty;
+
+	private long numSamples;
+
+	public EvaluatorTrainer() {
+		this.xtx = new double[Evaluator.NUM_FEATURES][Evaluator.NUM_FEATURES];
+		this.xty = new double[Evaluator.NUM_FEATURES];
+
+		this.numSamples = 0;
+	}
+
+	/**
+	 * Usage: EvaluatorTrainer outputFile [numGames [recordFile]], or
+	 * EvaluatorTrainer outputFile -records recordFile to fit from the games in a
+	 * record file instead of playing new ones
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: EvaluatorTrainer outputFile [numGames [recordFile]]");
+			System.out.println("       EvaluatorTrainer outputFile -records recordFile");
+			return;
+		}
+
+		if (args.length > 2 && args[1].equals("-records")) {
+			fitFromRecords(Paths.get(args[0]), Paths.get(args[2]));
+			return;
+		}
+
+		final int numGames = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+		final EvaluatorTrainer trainer = new EvaluatorTrainer();
+
+		final GameRecordWriter writer = args.length > 2 ? new GameRecordWriter(Paths.get(args[2])) : null;
+
+		for (int first = 0; first < numGames; first += BATCH_SIZE) {
+			final int size = Math.min(BATCH_SIZE, numGames - first);
+
+			// cycle through every player count so the model works for all of them
+			// (game i has 2 + i % 4 players)
+			for (int numPlayers = 2; numPlayers <= 5; numPlayers++) {
+				final int numBatchGames = (size + 5 - numPlayers) / 4;
+				if (numBatchGames == 0) {
+					continue;
+				}
+
+				final SushiGoState[] games = new SushiGoState[numBatchGames];
+				final GameRecord[] records = new GameRecord[numBatchGames];
+				for (int i = 0; i < numBatchGames; i++) {
+					records[i] = writer == null ? null : new GameRecord(numPlayers);
+					games[i] = SushiGoState.createRandomGame(numPlayers, records[i]);
+				}
+
+				trainer.addSelfPlayGames(games);
+
+				if (writer != null) {
+					for (int i = 0; i < numBatchGames; i++) {
+						records[i].finish(games[i]);
+						writer.append(records[i]);
+					}
+				}
+			}
+		}
+
+		if (writer != null) {
+			writer.close();
+		}
+
+		final Evaluator evaluator = trainer.fit();
+		evaluator.save(Paths.get(args[0]));
+
+		System.out.println("Trained on " + trainer.numSamples + " samples from " + numGames + " games");
+	}
+
+	/**
+	 * Fits an evaluator from every finished game in a record file, and saves it.
+	 * 
+	 * @param outputFile
+	 *            The file to save the weights to
+	 * @param recordFile
+	 *            The file of game records to fit from
+	 * @throws IOException
+	 *             If the record file could not be read or the weights could not be
+	 *             saved
+	 */
+	private static void fitFromRecords(final Path outputFile, final Path recordFile) throws IOException {
+		final EvaluatorTrainer trainer = new EvaluatorTrainer();
+		int numGames = 0;
+		int numSkipped = 0;
+
+		try (GameRecordReader reader = new GameRecordReader(recordFile)) {
+			for (final GameRecord record : reader) {
+				try {
+					if (trainer.addRecordedGame(record)) {
+						numGames++;
+					} else {
+						numSkipped++;
+					}
+				} catch (final IllegalArgumentException e) {
+					numSkipped++;
+				}
+			}
+		}
+
+		final Evaluator evaluator = trainer.fit();
+		evaluator.save(outputFile);
+
+		System.out.println("Trained on " + trainer.numSamples + " samples from " + numGames + " recorded games ("
+				+ numSkipped + " unfinished or invalid records skipped)");
+	}
+
+	/**
+	 * Replays the given record and adds the position at the start of every trick
+	 * as a training sample. Only the fields and scores are used, so the unknown
+	 * cards in the hands of a real game do not matter.
+	 * 
+	 * @param record
+	 *            The record to replay
+	 * @return Whether or not the record was added (records of unfinished games are
+	 *         skipped, since their final scores are not known)
+	 * @throws IllegalArgumentException
+	 *             If the recorded events are not a valid game
+	 */
+	public boolean addRecordedGame(final GameRecord record) throws IllegalArgumentException {
+		final List<double[][]> features = new ArrayList<>();
+		final List<int[]> scores = new ArrayList<>();
+
+		final SushiGoState end = record.replay(state -> this.record(state, features, scores));
+
+		if (!end.isGameOver()) {
+			return false;
+		}
+
+		this.addSamples(end, features, scores);
+
+		return true;
+	}
+
+	/**
+	 * Plays the given games to the end with random moves and adds every position
+	 * along the way as a training sample. The games are played in lockstep, so
+	 * their rounds all end on the same trick and are scored together with a
+	 * {@link ScoreBatch}.
+	 * 
+	 * @param games
+	 *            The games to play (every hand must be known, and every game must
+	 *            have the same number of players and be at the same point)
+	 * @throws IllegalArgumentException
+	 *             If the games do not all have the same number of players
+	 */
+	public void addSelfPlayGames(final SushiGoState[] games) throws IllegalArgumentException {
+		final ScoreBatch batch = new ScoreBatch(games.length, games[0].getNumPlayers());
+
+		// the round each game has just ended (0 if it has not)
+		final int[] endedRounds = new int[games.length];
+
+		final List<List<double[][]>> features = new ArrayList<>();
+		final List<List<int[]>> scores = new ArrayList<>();
+
+		for (int i = 0; i < games.length; i++) {
+			final int game = i;
+			games[i].setRoundScorer((players, currentRound) -> {
+				batch.setGame(game, players);
+				endedRounds[game] = currentRound;
+			});
+
+			features.add(new ArrayList<>());
+			scores.add(new ArrayList<>());
+		}
+
+		while (!games[0].isGameOver()) {
+			for (int i = 0; i < games.length; i++) {
+				this.record(games[i], features.get(i), scores.get(i));
+				games[i].playRandomTrick();
+			}
+
+			if (endedRounds[0] == 0) {
+				continue;
+			}
+
+			batch.scoreRound(endedRounds[0]);
+
+			for (int i = 0; i < games.length; i++) {
+				final Player[] players = games[i].getPlayers();
+				for (int j = 0; j < players.length; j++) {
+					players[j].addScore(batch.getScore(i, j) - players[j].getScore());
+				}
+
+				endedRounds[i] = 0;
+			}
+		}
+
+		for (int i = 0; i < games.length; i++) {
+			games[i].setRoundScorer(null);
+			this.addSamples(games[i], features.get(i), scores.get(i));
+		}
+	}
+
+	/**
+	 * Labels every recorded position of a game with the points each player went
+	 * on to score, and adds them as training samples.
+	 * 
+	 * @param end
+	 *            The game at its end
+	 * @param features
+	 *            The features of each player in each recorded position
+	 * @param scores
+	 *            The score of each player in each recorded position
+	 */
+	private void addSamples(final SushiGoState end, final List<double[][]> features, final List<int[]> scores) {
+		final Player[] players = end.getPlayers();
+
+		for (int i = 0; i < features.size(); i++) {
+			for (int j = 0; j < players.length; j++) {
+				this.addSample(features.get(i)[j], players[j].getScore() - scores.get(i)[j]);
+			}
+		}
+	}
+
+	/**
+	 * @param state
+	 *            The position to record
+	 * @param features
+	 *            The list to add each player's features to
+	 * @param scores
+	 *            The list to add each player's current score to
+	 */
+	private void record(final SushiGoState state, final List<double[][]> features, final List<int[]> scores) {
+		final Player[] players = state.getPlayers();
+
+		final double[][] positionFeatures = new double[players.length][Evaluator.NUM_FEATURES];
+		final int[] positionScores = new int[players.length];
+
+		for (int i = 0; i < players.length; i++) {
+			Evaluator.extractFeatures(players, i, state.getCurrentRound(), positionFeatures[i]);
+			positionScores[i] = players[i].getScore();
+		}
+
+		features.add(positionFeatures);
+		scores.add(positionScores);
+	}
+
+	/**
+	 * @param features
+	 *            The features of a single player in a single position
+	 * @param pointsGained
+	 *            The points that player went on to score
+	 */
+	public void addSample(final double[] features, final double pointsGained) {
+		for (int i = 0; i < Evaluator.NUM_FEATURES; i++) {
+			for (int j = 0; j < Evaluator.NUM_FEATURES; j++) {
+				this.xtx[i][j] += features[i] * features[j];
+			}
+
+			this.xty[i] += features[i] * pointsGained;
+		}
+
+		this.numSamples++;
+	}
+
+	/**
+	 * @return An evaluator with the least squares weights of all the samples
+	 *         added so far
+	 */
+	public Evaluator fit() {
+		final int n = Evaluator.NUM_FEATURES;
+
+		// augmented matrix [X^T X + ridge | X^T y]
+		final double[][] a = new double[n][n + 1];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				a[i][j] = this.xtx[i][j];
+			}
+
+			a[i][i] += RIDGE;
+			a[i][n] = this.xty[i];
+		}
+
+		// gaussian elimination with partial pivoting
+		for (int col = 0; col < n; col++) {
+			int pivot = col;
+			for (int row = col + 1; row < n; row++) {
+				if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+					pivot = row;
+				}
+			}
+
+			final double[] temp = a[col];
+			a[col] = a[pivot];
+			a[pivot] = temp;
+
+			for (int row = col + 1; row < n; row++) {
+				final double factor = a[row][col] / a[col][col];
+				for (int k = col; k <= n; k++) {
+					a[row][k] -= factor * a[col][k];
+				}
+			}
+		}
+
+		final double[] weights = new double[n];
+		for (int row = n - 1; row >= 0; row--) {
+			double sum = a[row][n];
+			for (int k = row + 1; k < n; k++) {
+				sum -= a[row][k] * weights[k];
+			}
+
+			weights[row] = sum / a[row][row];
+		}
+
+		return new Evaluator(weights);
+	}
+}
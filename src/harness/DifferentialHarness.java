@@ -0,0 +1,445 @@
+package harness;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import score.ScoreBatch;
+import score.Scoring;
+import state.SushiGoState;
+
+/**
+ * This class checks a candidate engine against the reference rules. It plays
+ * seeded random games through both engines side by side and fails as soon as
+ * they disagree on the legal plays, the state after a play, or the winners. It
+ * also checks that {@link ScoreBatch} scores every round the same as
+ * {@link Scoring}. It then measures how many games per second each engine
+ * plays and compares the candidate's speed (relative to the reference, so
+ * results carry across machines) against a saved baseline.
+ * 
+ * @author Aaron Tetens
+ */
+public class DifferentialHarness {
+
+	private static final int[] NUM_CARDS_PER_PLAYER = { 0, 0, 10, 9, 8, 7 };
+
+	private static final int NUM_TIMING_RUNS = 3;
+
+	// the number of games scored at once when checking ScoreBatch, and the
+	// fraction of the games that are checked with it
+	private static final int SCORE_BATCH_SIZE = 64;
+	private static final int SCORE_BATCH_DIVISOR = 10;
+
+	private static final String[] CARDS = { "T", "S", "D", "2M", "3M", "1M", "2N", "3N", "1N", "P", "W", "C" };
+	private static final int[] CARD_COUNTS = { 14, 14, 14, 12, 8, 6, 10, 5, 5, 10, 6, 4 };
+
+	/**
+	 * Usage: DifferentialHarness [-games n] [-timing n] [-seed n] [-threads n]
+	 * [-candidate className] [-baseline file] [-tolerance fraction] [-update true]
+	 */
+	public static void main(final String[] args) throws IOException, ReflectiveOperationException {
+		long numGames = 100000;
+		int numTimingGames = 20000;
+		long seed = 1;
+		int numThreads = Runtime.getRuntime().availableProcessors();
+		String candidateClass = SushiGoStateEngine.class.getName();
+		Path baselineFile = null;
+		double tolerance = 0.1;
+		boolean update = false;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-games")) {
+				numGames = Long.parseLong(args[i + 1]);
+			} else if (args[i].equals("-timing")) {
+				numTimingGames = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-seed")) {
+				seed = Long.parseLong(args[i + 1]);
+			} else if (args[i].equals("-threads")) {
+				numThreads = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-candidate")) {
+				candidateClass = args[i + 1];
+			} else if (args[i].equals("-baseline")) {
+				baselineFile = Paths.get(args[i + 1]);
+			} else if (args[i].equals("-tolerance")) {
+				tolerance = Double.parseDouble(args[i + 1]);
+			} else if (args[i].equals("-update")) {
+				update = Boolean.parseBoolean(args[i + 1]);
+			} else {
+				System.out.println("Unknown option " + args[i]);
+				System.exit(2);
+			}
+		}
+
+		final Engine<?> reference = new ReferenceEngine();
+		final Engine<?> candidate = (Engine<?>) Class.forName(candidateClass).getDeclaredConstructor().newInstance();
+
+		final String divergence = checkAll(reference, candidate, numGames, seed, numThreads);
+		if (divergence != null) {
+			System.out.println("DIVERGENCE " + divergence);
+			System.exit(1);
+		}
+
+		System.out.println("No divergence in " + numGames + " games");
+
+		final long numScoreBatchGames = numGames / SCORE_BATCH_DIVISOR;
+		final String scoreDivergence = checkScoreBatch(numScoreBatchGames, seed);
+		if (scoreDivergence != null) {
+			System.out.println("DIVERGENCE " + scoreDivergence);
+			System.exit(1);
+		}
+
+		System.out.println("No ScoreBatch divergence in " + numScoreBatchGames + " games");
+
+		// warm both engines up, then keep the best of a few interleaved runs so that
+		// noise from the machine affects both engines alike
+		measure(reference, numTimingGames / 10, seed);
+		measure(candidate, numTimingGames / 10, seed);
+
+		double referenceRate = 0;
+		double candidateRate = 0;
+
+		for (int run = 0; run < NUM_TIMING_RUNS; run++) {
+			referenceRate = Math.max(referenceRate, measure(reference, numTimingGames, seed));
+			candidateRate = Math.max(candidateRate, measure(candidate, numTimingGames, seed));
+		}
+
+		final double ratio = candidateRate / referenceRate;
+
+		System.out.printf("Reference: %.0f games/s, candidate: %.0f games/s (%.2fx)%n", referenceRate,
+				candidateRate, ratio);
+
+		if (baselineFile == null) {
+			return;
+		}
+
+		if (update || !Files.exists(baselineFile)) {
+			final Properties baseline = new Properties();
+			baseline.setProperty("candidate", candidateClass);
+			baseline.setProperty("referenceGamesPerSecond", Double.toString(referenceRate));
+			baseline.setProperty("candidateGamesPerSecond", Double.toString(candidateRate));
+			baseline.setProperty("ratio", Double.toString(ratio));
+
+			try (OutputStream out = Files.newOutputStream(baselineFile)) {
+				baseline.store(out, "DifferentialHarness baseline");
+			}
+
+			System.out.println("Saved baseline to " + baselineFile);
+			return;
+		}
+
+		final Properties baseline = new Properties();
+		try (InputStream in = Files.newInputStream(baselineFile)) {
+			baseline.load(in);
+		}
+
+		final double baselineRatio = Double.parseDouble(baseline.getProperty("ratio"));
+		if (ratio < baselineRatio * (1 - tolerance)) {
+			System.out.printf("SLOWDOWN %.2fx is below the baseline of %.2fx%n", ratio, baselineRatio);
+			System.exit(1);
+		}
+
+		System.out.printf("Within %.0f%% of the baseline of %.2fx%n", 100 * tolerance, baselineRatio);
+	}
+
+	/**
+	 * @param reference
+	 *            The reference engine
+	 * @param candidate
+	 *            The engine being checked
+	 * @param numGames
+	 *            The number of games to play
+	 * @param seed
+	 *            The seed of the first game
+	 * @param numThreads
+	 *            The number of threads to split the games between
+	 * @return A description of the first divergence found, or null if there was
+	 *         none
+	 */
+	public static String checkAll(final Engine<?> reference, final Engine<?> candidate, final long numGames,
+			final long seed, final int numThreads) {
+
+		final AtomicReference<String> divergence = new AtomicReference<>();
+		final Thread[] threads = new Thread[numThreads];
+
+		for (int t = 0; t < numThreads; t++) {
+			final int offset = t;
+
+			threads[t] = new Thread(() -> {
+				for (long game = offset; game < numGames && divergence.get() == null; game += numThreads) {
+					final String result = check(reference, candidate, seed + game);
+
+					if (result != null) {
+						divergence.compareAndSet(null, result);
+					}
+				}
+			});
+
+			threads[t].start();
+		}
+
+		for (final Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return divergence.get();
+	}
+
+	/**
+	 * Plays a single seeded game through both engines.
+	 * 
+	 * @param reference
+	 *            The reference engine
+	 * @param candidate
+	 *            The engine being checked
+	 * @param gameSeed
+	 *            The seed of the game
+	 * @return A description of the divergence, or null if the engines agreed
+	 */
+	public static <A, B> String check(final Engine<A> reference, final Engine<B> candidate, final long gameSeed) {
+		final Random random = new Random(gameSeed);
+		final List<List<List<String>>> deals = deal(random);
+		final int numPlayers = deals.get(0).size();
+
+		final A referenceGame = reference.newGame(deals.get(0));
+		final B candidateGame;
+
+		try {
+			candidateGame = candidate.newGame(deals.get(0));
+		} catch (final RuntimeException e) {
+			return "game " + gameSeed + ": candidate could not start: " + e;
+		}
+
+		String lastPlay = "the deal";
+
+		for (int trick = 0; reference.getWinningPlayers(referenceGame).isEmpty(); trick++) {
+			for (int player = 0; player < numPlayers; player++) {
+				final String where = "game " + gameSeed + ", trick " + trick + ", player " + player;
+
+				final List<String> referencePlays = sorted(reference.getLegalPlays(referenceGame, player));
+				final List<String> candidatePlays;
+
+				try {
+					candidatePlays = sorted(candidate.getLegalPlays(candidateGame, player));
+				} catch (final RuntimeException e) {
+					return where + ": candidate failed to list plays: " + e;
+				}
+
+				if (!referencePlays.equals(candidatePlays)) {
+					return where + " (after " + lastPlay + "): legal plays differ\n  reference: " + referencePlays
+							+ "\n  candidate: " + candidatePlays;
+				}
+
+				final String play = referencePlays.get(random.nextInt(referencePlays.size()));
+				final List<List<String>> nextDeal = nextDeal(deals, trick);
+
+				reference.play(referenceGame, player, play, nextDeal);
+
+				try {
+					candidate.play(candidateGame, player, play, nextDeal);
+				} catch (final RuntimeException e) {
+					return where + ": candidate failed to play " + play + ": " + e;
+				}
+
+				final String referenceState = reference.describe(referenceGame);
+				final String candidateState = candidate.describe(candidateGame);
+
+				if (!referenceState.equals(candidateState)) {
+					return where + ": states differ after " + play + "\n  reference: " + referenceState
+							+ "\n  candidate: " + candidateState;
+				}
+
+				lastPlay = play;
+			}
+		}
+
+		final List<Integer> referenceWinners = reference.getWinningPlayers(referenceGame);
+		final List<Integer> candidateWinners = candidate.getWinningPlayers(candidateGame);
+
+		if (!referenceWinners.equals(candidateWinners)) {
+			return "game " + gameSeed + ": winners differ\n  reference: " + referenceWinners + "\n  candidate: "
+					+ candidateWinners;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Plays seeded games in lockstep batches (every game of a batch has the same
+	 * number of players, so their rounds end on the same trick) and checks that
+	 * {@link ScoreBatch} scores every round of every game the same as
+	 * {@link Scoring#updateScores}.
+	 * 
+	 * @param numGames
+	 *            The number of games to play
+	 * @param seed
+	 *            The seed of the first game
+	 * @return A description of the first divergence found, or null if there was
+	 *         none
+	 */
+	public static String checkScoreBatch(final long numGames, final long seed) {
+		final SushiGoStateEngine engine = new SushiGoStateEngine();
+
+		for (long first = 0; first < numGames; first += SCORE_BATCH_SIZE) {
+			final int numPlayers = 2 + (int) (first / SCORE_BATCH_SIZE % 4);
+			final int size = (int) Math.min(SCORE_BATCH_SIZE, numGames - first);
+
+			final ScoreBatch batch = new ScoreBatch(size, numPlayers);
+
+			// the round each game has just ended (0 if it has not)
+			final int[] endedRounds = new int[size];
+
+			final Random[] randoms = new Random[size];
+			final List<List<List<List<String>>>> deals = new ArrayList<>();
+			final SushiGoState[] games = new SushiGoState[size];
+
+			for (int i = 0; i < size; i++) {
+				final int game = i;
+
+				randoms[i] = new Random(seed + first + i);
+				deals.add(deal(randoms[i], numPlayers));
+				games[i] = engine.newGame(deals.get(i).get(0));
+
+				games[i].setRoundScorer((players, currentRound) -> {
+					batch.setGame(game, players);
+					Scoring.updateScores(players, currentRound);
+					endedRounds[game] = currentRound;
+				});
+			}
+
+			for (int trick = 0; !games[0].isGameOver(); trick++) {
+				for (int i = 0; i < size; i++) {
+					for (int player = 0; player < numPlayers; player++) {
+						final List<String> plays = sorted(engine.getLegalPlays(games[i], player));
+						engine.play(games[i], player, plays.get(randoms[i].nextInt(plays.size())),
+								nextDeal(deals.get(i), trick));
+					}
+				}
+
+				if (endedRounds[0] == 0) {
+					continue;
+				}
+
+				batch.scoreRound(endedRounds[0]);
+
+				for (int i = 0; i < size; i++) {
+					for (int player = 0; player < numPlayers; player++) {
+						final int expected = games[i].getPlayers()[player].getScore();
+						final int actual = batch.getScore(i, player);
+
+						if (expected != actual) {
+							return "game " + (seed + first + i) + ", round " + endedRounds[i] + ", player " + player
+									+ ": scores differ\n  Scoring: " + expected + "\n  ScoreBatch: " + actual;
+						}
+					}
+
+					endedRounds[i] = 0;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param engine
+	 *            The engine to time
+	 * @param numGames
+	 *            The number of games to play
+	 * @param seed
+	 *            The seed of the first game
+	 * @return The number of games the engine played per second
+	 */
+	public static <S> double measure(final Engine<S> engine, final int numGames, final long seed) {
+		final long start = System.nanoTime();
+
+		for (int game = 0; game < numGames; game++) {
+			final Random random = new Random(seed + game);
+			final List<List<List<String>>> deals = deal(random);
+			final int numPlayers = deals.get(0).size();
+
+			final S state = engine.newGame(deals.get(0));
+
+			for (int trick = 0; engine.getWinningPlayers(state).isEmpty(); trick++) {
+				for (int player = 0; player < numPlayers; player++) {
+					final List<String> plays = sorted(engine.getLegalPlays(state, player));
+					engine.play(state, player, plays.get(random.nextInt(plays.size())), nextDeal(deals, trick));
+				}
+			}
+		}
+
+		return numGames / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * @param random
+	 *            The game's random numbers
+	 * @return The hands of every player for each of the 3 rounds (the number of
+	 *         players is chosen at random)
+	 */
+	private static List<List<List<String>>> deal(final Random random) {
+		return deal(random, 2 + random.nextInt(4));
+	}
+
+	/**
+	 * @param random
+	 *            The game's random numbers
+	 * @param numPlayers
+	 *            The number of players
+	 * @return The hands of every player for each of the 3 rounds
+	 */
+	private static List<List<List<String>>> deal(final Random random, final int numPlayers) {
+		final List<String> deck = new ArrayList<>();
+		for (int i = 0; i < CARDS.length; i++) {
+			deck.addAll(Collections.nCopies(CARD_COUNTS[i], CARDS[i]));
+		}
+
+		Collections.shuffle(deck, random);
+
+		final List<List<List<String>>> deals = new ArrayList<>();
+		int next = 0;
+
+		for (int round = 0; round < 3; round++) {
+			final List<List<String>> hands = new ArrayList<>();
+
+			for (int player = 0; player < numPlayers; player++) {
+				hands.add(new ArrayList<>(deck.subList(next, next + NUM_CARDS_PER_PLAYER[numPlayers])));
+				next += NUM_CARDS_PER_PLAYER[numPlayers];
+			}
+
+			deals.add(hands);
+		}
+
+		return deals;
+	}
+
+	/**
+	 * @param deals
+	 *            The hands of every player for each of the 3 rounds
+	 * @param trick
+	 *            The number of tricks played so far in the game
+	 * @return The hands dealt if the given trick ends the round
+	 */
+	private static List<List<String>> nextDeal(final List<List<List<String>>> deals, final int trick) {
+		final int numCardsPerPlayer = NUM_CARDS_PER_PLAYER[deals.get(0).size()];
+		return deals.get(Math.min(trick / numCardsPerPlayer + 1, 2));
+	}
+
+	private static List<String> sorted(final List<String> plays) {
+		final List<String> sorted = new ArrayList<>(plays);
+		Collections.sort(sorted);
+		return sorted;
+	}
+}
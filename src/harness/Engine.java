@@ -0,0 +1,63 @@
+package harness;
+
+import java.util.List;
+
+/**
+ * This interface is a rules engine that can be checked against another one by
+ * the {@link DifferentialHarness}. The harness decides every deal and every
+ * play, so two engines that follow the same rules always end up in the same
+ * state.
+ * 
+ * @author Aaron Tetens
+ * @param <S>
+ *            The engine's game state
+ */
+public interface Engine<S> {
+
+	/**
+	 * @param hands
+	 *            The first round hand of every player (index 0 is the AI)
+	 * @return A new game with the given hands
+	 */
+	S newGame(List<List<String>> hands);
+
+	/**
+	 * @param state
+	 *            The game
+	 * @param player
+	 *            The index of the player
+	 * @return Every distinct play the player can make, in any order
+	 */
+	List<String> getLegalPlays(S state, int player);
+
+	/**
+	 * Plays the given cards. Players play in index order, and the hands are
+	 * passed once everyone has played.
+	 * 
+	 * @param state
+	 *            The game
+	 * @param player
+	 *            The index of the player
+	 * @param cards
+	 *            The cards to play, separated by a space
+	 * @param nextDeal
+	 *            Every player's hand for the next round, used if this play ends the
+	 *            round
+	 */
+	void play(S state, int player, String cards, List<List<String>> nextDeal);
+
+	/**
+	 * @param state
+	 *            The game
+	 * @return The round, and each player's score, sorted hand and field (in play
+	 *         order)
+	 */
+	String describe(S state);
+
+	/**
+	 * @param state
+	 *            The game
+	 * @return The winning players, empty if the game is not over
+	 */
+	List<Integer> getWinningPlayers(S state);
+}
@@ -0,0 +1,280 @@
+package harness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This class is a deliberately plain implementation of the rules that the real
+ * engine is checked against. It favors being obviously correct over being fast,
+ * so it should not be optimized.
+ * 
+ * @author Aaron Tetens
+ */
+public class ReferenceEngine implements Engine<ReferenceEngine.Game> {
+
+	/**
+	 * This class is the reference engine's game state.
+	 */
+	public static class Game {
+
+		private int round = 1;
+		private int numPlayedThisTrick = 0;
+
+		private final List<List<String>> hands = new ArrayList<>();
+		private final List<List<String>> fields = new ArrayList<>();
+		private final int[] scores;
+
+		private Game(final List<List<String>> hands) {
+			for (final List<String> hand : hands) {
+				this.hands.add(new ArrayList<>(hand));
+				this.fields.add(new ArrayList<>());
+			}
+
+			this.scores = new int[hands.size()];
+		}
+	}
+
+	@Override
+	public Game newGame(final List<List<String>> hands) {
+		return new Game(hands);
+	}
+
+	@Override
+	public List<String> getLegalPlays(final Game game, final int player) {
+		final List<String> hand = game.hands.get(player);
+		final Set<String> plays = new HashSet<>(hand);
+
+		if (game.fields.get(player).contains("C")) {
+			for (int i = 0; i < hand.size(); i++) {
+				for (int j = 0; j < hand.size(); j++) {
+					if (i != j) {
+						plays.add(hand.get(i) + " " + hand.get(j));
+					}
+				}
+			}
+		}
+
+		return new ArrayList<>(plays);
+	}
+
+	@Override
+	public void play(final Game game, final int player, final String cards, final List<List<String>> nextDeal) {
+		final List<String> hand = game.hands.get(player);
+		final List<String> field = game.fields.get(player);
+		final String[] split = cards.split(" ");
+
+		if (split.length == 2 && !field.contains("C")) {
+			throw new IllegalArgumentException("Tried to play 2 cards without chopsticks");
+		}
+
+		for (final String card : split) {
+			if (!hand.remove(card)) {
+				throw new IllegalArgumentException("Tried to play " + card + " (not in hand)");
+			}
+
+			field.add(card);
+		}
+
+		// chopsticks go back into the hand
+		if (split.length == 2) {
+			field.remove("C");
+			hand.add("C");
+		}
+
+		game.numPlayedThisTrick++;
+		if (game.numPlayedThisTrick < game.hands.size()) {
+			return;
+		}
+
+		// everyone has played, so pass each hand to the next player
+		game.numPlayedThisTrick = 0;
+		final List<String> last = game.hands.remove(game.hands.size() - 1);
+		game.hands.add(0, last);
+
+		if (!game.hands.get(0).isEmpty()) {
+			return;
+		}
+
+		scoreRound(game);
+
+		if (game.round < 3) {
+			game.round++;
+
+			for (int i = 0; i < game.fields.size(); i++) {
+				final int numPuddings = Collections.frequency(game.fields.get(i), "P");
+
+				game.fields.get(i).clear();
+				game.fields.get(i).addAll(Collections.nCopies(numPuddings, "P"));
+				game.hands.get(i).addAll(nextDeal.get(i));
+			}
+		}
+	}
+
+	/**
+	 * @param game
+	 *            The game whose round just ended
+	 */
+	private static void scoreRound(final Game game) {
+		final int numPlayers = game.scores.length;
+		final int[] maki = new int[numPlayers];
+		final int[] puddings = new int[numPlayers];
+
+		for (int i = 0; i < numPlayers; i++) {
+			int wasabi = 0;
+			int sashimi = 0;
+			int tempura = 0;
+			int dumplings = 0;
+
+			for (final String card : game.fields.get(i)) {
+				if (card.equals("W")) {
+					wasabi++;
+				} else if (card.endsWith("N")) {
+					final int value = card.charAt(0) - '0';
+
+					if (wasabi > 0) {
+						wasabi--;
+						game.scores[i] += 3 * value;
+					} else {
+						game.scores[i] += value;
+					}
+				} else if (card.endsWith("M")) {
+					maki[i] += card.charAt(0) - '0';
+				} else if (card.equals("S")) {
+					sashimi++;
+				} else if (card.equals("T")) {
+					tempura++;
+				} else if (card.equals("D")) {
+					dumplings++;
+				} else if (card.equals("P")) {
+					puddings[i]++;
+				}
+			}
+
+			// every full set of 5 dumplings is worth 15, the rest score 1, 3, 6 or 10
+			final int leftoverDumplings = dumplings % 5;
+			game.scores[i] += 10 * (sashimi / 3) + 5 * (tempura / 2) + 15 * (dumplings / 5)
+					+ leftoverDumplings * (leftoverDumplings + 1) / 2;
+		}
+
+		// maki: players are ranked by their maki (at least 1 to place), the most gets
+		// 6 (split if tied), and the next most gets 3 (split if tied) only if first
+		// place is not tied
+		final List<List<Integer>> makiRanks = rank(maki);
+		if (maki[makiRanks.get(0).get(0)] > 0) {
+			final List<Integer> first = makiRanks.get(0);
+
+			for (final int i : first) {
+				game.scores[i] += 6 / first.size();
+			}
+
+			if (first.size() == 1 && makiRanks.size() > 1 && maki[makiRanks.get(1).get(0)] > 0) {
+				final List<Integer> second = makiRanks.get(1);
+
+				for (final int i : second) {
+					game.scores[i] += 3 / second.size();
+				}
+			}
+		}
+
+		// pudding: 6 for the most, -6 for the least (not with 2 players), both split
+		// if tied
+		if (game.round == 3) {
+			final List<List<Integer>> puddingRanks = rank(puddings);
+			final List<Integer> most = puddingRanks.get(0);
+			final List<Integer> least = puddingRanks.get(puddingRanks.size() - 1);
+
+			for (final int i : most) {
+				game.scores[i] += 6 / most.size();
+			}
+
+			if (numPlayers > 2) {
+				for (final int i : least) {
+					game.scores[i] -= 6 / least.size();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param values
+	 *            Each player's value in a contest
+	 * @return The players grouped by value, from the highest value to the lowest
+	 */
+	private static List<List<Integer>> rank(final int[] values) {
+		final TreeMap<Integer, List<Integer>> groups = new TreeMap<>(Collections.reverseOrder());
+
+		for (int i = 0; i < values.length; i++) {
+			groups.computeIfAbsent(values[i], value -> new ArrayList<>()).add(i);
+		}
+
+		return new ArrayList<>(groups.values());
+	}
+
+	@Override
+	public String describe(final Game game) {
+		return describe(game.round, game.scores.length, i -> game.scores[i], game.hands::get, game.fields::get);
+	}
+
+	@Override
+	public List<Integer> getWinningPlayers(final Game game) {
+		final List<Integer> winningPlayers = new ArrayList<>();
+		if (game.round < 3 || !game.hands.get(0).isEmpty()) {
+			return winningPlayers;
+		}
+
+		int best = Integer.MIN_VALUE;
+		int bestPuddings = -1;
+
+		for (int i = 0; i < game.scores.length; i++) {
+			final int puddings = Collections.frequency(game.fields.get(i), "P");
+
+			if (game.scores[i] > best || (game.scores[i] == best && puddings > bestPuddings)) {
+				winningPlayers.clear();
+				best = game.scores[i];
+				bestPuddings = puddings;
+			}
+
+			if (game.scores[i] == best && puddings == bestPuddings) {
+				winningPlayers.add(i);
+			}
+		}
+
+		return winningPlayers;
+	}
+
+	/**
+	 * @param round
+	 *            The current round
+	 * @param numPlayers
+	 *            The number of players
+	 * @param score
+	 *            Each player's score
+	 * @param hand
+	 *            Each player's hand
+	 * @param field
+	 *            Each player's field
+	 * @return The description shared by every engine (see
+	 *         {@link Engine#describe})
+	 */
+	static String describe(final int round, final int numPlayers, final IntUnaryOperator score,
+			final IntFunction<List<String>> hand, final IntFunction<List<String>> field) {
+
+		final StringBuilder sb = new StringBuilder("round " + round);
+
+		for (int i = 0; i < numPlayers; i++) {
+			final List<String> sortedHand = new ArrayList<>(hand.apply(i));
+			Collections.sort(sortedHand);
+
+			sb.append(" | ").append(score.applyAsInt(i)).append(" ").append(sortedHand).append(" ")
+					.append(field.apply(i));
+		}
+
+		return sb.toString();
+	}
+}
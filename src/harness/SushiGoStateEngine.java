@@ -0,0 +1,68 @@
+package harness;
+
+import java.util.List;
+
+import state.CardInput;
+import state.Player;
+import state.SushiGoState;
+
+/**
+ * This class runs the real engine ({@link SushiGoState}) in the harness.
+ * 
+ * @author Aaron Tetens
+ */
+public class SushiGoStateEngine implements Engine<SushiGoState> {
+
+	@Override
+	public SushiGoState newGame(final List<List<String>> hands) {
+		return new SushiGoState(hands.size(), new DealInput(hands), null);
+	}
+
+	@Override
+	public List<String> getLegalPlays(final SushiGoState state, final int player) {
+		return state.getLegalPlays(player);
+	}
+
+	@Override
+	public void play(final SushiGoState state, final int player, final String cards,
+			final List<List<String>> nextDeal) {
+
+		state.playCards(player, cards, new DealInput(nextDeal));
+	}
+
+	@Override
+	public String describe(final SushiGoState state) {
+		final Player[] players = state.getPlayers();
+
+		return ReferenceEngine.describe(state.getCurrentRound(), players.length, i -> players[i].getScore(),
+				i -> players[i].getHand(), i -> players[i].getField());
+	}
+
+	@Override
+	public List<Integer> getWinningPlayers(final SushiGoState state) {
+		return state.getWinningPlayers();
+	}
+
+	/**
+	 * This class deals the harness's hands (every card is known, so nothing is
+	 * ever revealed).
+	 */
+	private static class DealInput implements CardInput {
+
+		private final List<List<String>> hands;
+
+		DealInput(final List<List<String>> hands) {
+			this.hands = hands;
+		}
+
+		@Override
+		public String readDealtCard(final int player, final int cardNumber) {
+			return this.hands.get(player).get(cardNumber - 1);
+		}
+
+		@Override
+		public String readRevealedCard() {
+			throw new IllegalStateException("Every card in the harness is known");
+		}
+	}
+}
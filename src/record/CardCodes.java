@@ -0,0 +1,47 @@
+package record;
+
+/**
+ * This class converts between the card codes (see the README) and the 4-bit
+ * values they are stored as in game records.
+ * 
+ * @author Aaron Tetens
+ */
+class CardCodes {
+
+	private static final String[] CARDS = { "1N", "2N", "3N", "W", "P", "C", "D", "1M", "2M", "3M", "T", "S", "?" };
+
+	// marks the missing second card of a single card play
+	static final int NONE = 0xF;
+
+	/**
+	 * @param card
+	 *            The card code
+	 * @return The value the card is stored as
+	 * @throws IllegalArgumentException
+	 *             If the card code is not valid
+	 */
+	static int encode(final String card) throws IllegalArgumentException {
+		for (int i = 0; i < CARDS.length; i++) {
+			if (CARDS[i].equals(card)) {
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException("Tried to record " + card + " (not a card)");
+	}
+
+	/**
+	 * @param value
+	 *            The value the card is stored as
+	 * @return The card code
+	 * @throws IllegalArgumentException
+	 *             If the value is not a valid card
+	 */
+	static String decode(final int value) throws IllegalArgumentException {
+		if (value < 0 || value >= CARDS.length) {
+			throw new IllegalArgumentException("Tried to read card " + value + " (not a card)");
+		}
+
+		return CARDS[value];
+	}
+}
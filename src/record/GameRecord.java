@@ -0,0 +1,345 @@
+package record;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import state.CardInput;
+import state.GameObserver;
+import state.Player;
+import state.SushiGoState;
+
+/**
+ * This class is a compact binary record of a single game. It observes the game
+ * as it is played and stores every event in order:
+ * <ul>
+ * <li>DEAL: header, number of cards, one byte per card</li>
+ * <li>PLAY: header, both cards packed into one byte (4 bits each)</li>
+ * <li>REVEAL: header, card</li>
+ * <li>END: header, each player's final score (2 bytes each), winning players
+ * bitmask</li>
+ * </ul>
+ * Each header is a single byte holding the event type and the player. On disk a
+ * record is its length (4 bytes), the number of players (1 byte) and then its
+ * events.
+ * 
+ * @author Aaron Tetens
+ */
+public class GameRecord implements GameObserver {
+
+	private static final int DEAL = 0;
+	private static final int PLAY = 1;
+	private static final int REVEAL = 2;
+	private static final int END = 3;
+
+	private static final int PLAYER_BITS = 3;
+	private static final int PLAYER_MASK = (1 << PLAYER_BITS) - 1;
+
+	private final int numPlayers;
+
+	private byte[] events;
+	private int size;
+
+	// only known once the game is over
+	private int[] finalScores;
+	private int winningPlayersMask;
+
+	/**
+	 * @param numPlayers
+	 *            The number of players in the recorded game
+	 */
+	public GameRecord(final int numPlayers) {
+		this(numPlayers, new byte[256], 0);
+	}
+
+	private GameRecord(final int numPlayers, final byte[] events, final int size) {
+		this.numPlayers = numPlayers;
+
+		this.events = events;
+		this.size = size;
+
+		this.finalScores = null;
+		this.winningPlayersMask = 0;
+	}
+
+	/**
+	 * Reads the record that starts at the buffer's position, and moves the
+	 * position to the end of the record.
+	 * 
+	 * @param buffer
+	 *            The buffer to read from
+	 * @return The record
+	 * @throws IllegalArgumentException
+	 *             If the buffer does not contain a valid record
+	 */
+	public static GameRecord decode(final ByteBuffer buffer) throws IllegalArgumentException {
+		final int length = buffer.getInt();
+		if (length < 1 || length > buffer.remaining()) {
+			throw new IllegalArgumentException("Tried to read a record of length " + length + " (corrupt record)");
+		}
+
+		final int numPlayers = buffer.get();
+		final byte[] events = new byte[length - 1];
+		buffer.get(events);
+
+		final GameRecord record = new GameRecord(numPlayers, events, events.length);
+
+		// find the final scores (if the game was finished)
+		int position = 0;
+		while (position < events.length) {
+			final int type = (events[position] & 0xFF) >>> PLAYER_BITS;
+
+			if (type == DEAL) {
+				position += 2 + events[position + 1];
+			} else if (type == PLAY || type == REVEAL) {
+				position += 2;
+			} else {
+				final ByteBuffer end = ByteBuffer.wrap(events, position + 1, 2 * numPlayers + 1);
+
+				record.finalScores = new int[numPlayers];
+				for (int i = 0; i < numPlayers; i++) {
+					record.finalScores[i] = end.getShort();
+				}
+
+				record.winningPlayersMask = end.get();
+				break;
+			}
+		}
+
+		return record;
+	}
+
+	/**
+	 * @return This record in its on disk format
+	 */
+	public ByteBuffer encode() {
+		final ByteBuffer buffer = ByteBuffer.allocate(5 + this.size);
+
+		buffer.putInt(1 + this.size);
+		buffer.put((byte) this.numPlayers);
+		buffer.put(this.events, 0, this.size);
+
+		buffer.flip();
+		return buffer;
+	}
+
+	@Override
+	public void onDeal(final int player, final List<String> hand) {
+		this.ensureCapacity(2 + hand.size());
+
+		this.events[this.size++] = header(DEAL, player);
+		this.events[this.size++] = (byte) hand.size();
+
+		for (final String card : hand) {
+			this.events[this.size++] = (byte) CardCodes.encode(card);
+		}
+	}
+
+	@Override
+	public void onPlay(final int player, final String cards) {
+		final String[] split = cards.split(" ");
+		final int second = split.length > 1 ? CardCodes.encode(split[1]) : CardCodes.NONE;
+
+		this.ensureCapacity(2);
+
+		this.events[this.size++] = header(PLAY, player);
+		this.events[this.size++] = (byte) (CardCodes.encode(split[0]) << 4 | second);
+	}
+
+	@Override
+	public void onReveal(final String card) {
+		this.ensureCapacity(2);
+
+		this.events[this.size++] = header(REVEAL, 0);
+		this.events[this.size++] = (byte) CardCodes.encode(card);
+	}
+
+	/**
+	 * Records the final scores of the given finished game.
+	 * 
+	 * @param state
+	 *            The game at its end
+	 */
+	public void finish(final SushiGoState state) {
+		final Player[] players = state.getPlayers();
+
+		this.finalScores = new int[players.length];
+		this.winningPlayersMask = 0;
+
+		this.ensureCapacity(2 + 2 * players.length);
+		this.events[this.size++] = header(END, 0);
+
+		for (int i = 0; i < players.length; i++) {
+			this.finalScores[i] = players[i].getScore();
+
+			this.events[this.size++] = (byte) (this.finalScores[i] >> 8);
+			this.events[this.size++] = (byte) this.finalScores[i];
+		}
+
+		for (final int winningPlayer : state.getWinningPlayers()) {
+			this.winningPlayersMask |= 1 << winningPlayer;
+		}
+
+		this.events[this.size++] = (byte) this.winningPlayersMask;
+	}
+
+	/**
+	 * Plays the recorded game back from the start.
+	 * 
+	 * @return The state at the end of the record
+	 * @throws IllegalArgumentException
+	 *             If the recorded events are not a valid game
+	 */
+	public SushiGoState replay() throws IllegalArgumentException {
+		return this.replay(null);
+	}
+
+	/**
+	 * Plays the recorded game back from the start.
+	 * 
+	 * @param onTrick
+	 *            Given the state at the start of every trick (before its first
+	 *            play, every trick is one play by each player), or null. The
+	 *            same state keeps being played on, so anything needed from it
+	 *            must be copied.
+	 * @return The state at the end of the record
+	 * @throws IllegalArgumentException
+	 *             If the recorded events are not a valid game
+	 */
+	public SushiGoState replay(final Consumer<SushiGoState> onTrick) throws IllegalArgumentException {
+		final Replay replay = new Replay();
+		final SushiGoState state = new SushiGoState(this.numPlayers, replay, null);
+
+		for (int numPlays = 0; replay.position < this.size; numPlays++) {
+			final int header = this.events[replay.position++] & 0xFF;
+			final int type = header >>> PLAYER_BITS;
+
+			if (type == END) {
+				break;
+			}
+
+			if (type != PLAY) {
+				throw new IllegalArgumentException("Expected a play at byte " + (replay.position - 1));
+			}
+
+			final int cards = this.events[replay.position++] & 0xFF;
+			final String first = CardCodes.decode(cards >>> 4);
+			final String play = (cards & 0xF) == CardCodes.NONE ? first
+					: first + " " + CardCodes.decode(cards & 0xF);
+
+			if (onTrick != null && numPlays % this.numPlayers == 0) {
+				onTrick.accept(state);
+			}
+
+			state.playCards(header & PLAYER_MASK, play, replay);
+		}
+
+		return state;
+	}
+
+	/**
+	 * @return The number of players in the recorded game
+	 */
+	public int getNumPlayers() {
+		return this.numPlayers;
+	}
+
+	/**
+	 * @return Each player's final score, or null if the game was not finished
+	 */
+	public int[] getFinalScores() {
+		return this.finalScores == null ? null : Arrays.copyOf(this.finalScores, this.finalScores.length);
+	}
+
+	/**
+	 * @return The winning players (empty if the game was not finished)
+	 */
+	public List<Integer> getWinningPlayers() {
+		final List<Integer> winningPlayers = new ArrayList<>();
+		for (int i = 0; i < this.numPlayers; i++) {
+			if ((this.winningPlayersMask & 1 << i) != 0) {
+				winningPlayers.add(i);
+			}
+		}
+
+		return winningPlayers;
+	}
+
+	/**
+	 * @param extra
+	 *            The number of bytes about to be added
+	 */
+	private void ensureCapacity(final int extra) {
+		if (this.size + extra > this.events.length) {
+			this.events = Arrays.copyOf(this.events, Math.max(this.size + extra, 2 * this.events.length));
+		}
+	}
+
+	/**
+	 * @param type
+	 *            The event type
+	 * @param player
+	 *            The player the event belongs to
+	 * @return The header byte of the event
+	 */
+	private static byte header(final int type, final int player) {
+		return (byte) (type << PLAYER_BITS | player);
+	}
+
+	/**
+	 * This class feeds the recorded deals and reveals back into the game as it is
+	 * replayed.
+	 */
+	private class Replay implements CardInput {
+
+		private int position = 0;
+
+		// the deal currently being read
+		private int dealStart = -1;
+		private int lastCardNumber = 0;
+
+		@Override
+		public String readDealtCard(final int player, final int cardNumber) {
+			// the game only asks for the same card again if the recorded one was invalid
+			if (cardNumber == this.lastCardNumber) {
+				throw new IllegalArgumentException("Recorded card " + cardNumber + " of player " + player
+						+ " could not be drawn from the deck");
+			}
+
+			this.lastCardNumber = cardNumber;
+
+			if (cardNumber == 1) {
+				this.expect(DEAL, player);
+				this.dealStart = this.position + 1;
+				this.position += 1 + GameRecord.this.events[this.position];
+			}
+
+			return CardCodes.decode(GameRecord.this.events[this.dealStart + cardNumber - 1]);
+		}
+
+		@Override
+		public String readRevealedCard() {
+			this.expect(REVEAL, 0);
+			return CardCodes.decode(GameRecord.this.events[this.position++]);
+		}
+
+		/**
+		 * @param type
+		 *            The type the next event must be
+		 * @param player
+		 *            The player the next event must belong to
+		 * @throws IllegalArgumentException
+		 *             If the next event does not match
+		 */
+		private void expect(final int type, final int player) throws IllegalArgumentException {
+			if (this.position >= GameRecord.this.size
+					|| GameRecord.this.events[this.position] != header(type, player)) {
+				throw new IllegalArgumentException("Unexpected event at byte " + this.position);
+			}
+
+			this.position++;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class streams the records of a file written by {@link GameRecordWriter}.
+ * The file is memory-mapped a window at a time, so files of any size can be read
+ * without loading them into memory.
+ * 
+ * @author Aaron Tetens
+ */
+public class GameRecordReader implements Closeable, Iterable<GameRecord> {
+
+	private static final long WINDOW_SIZE = 1 << 30;
+
+	private final FileChannel channel;
+	private final long fileSize;
+
+	/**
+	 * @param file
+	 *            The file to read
+	 * @throws IOException
+	 *             If the file could not be opened
+	 */
+	public GameRecordReader(final Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.fileSize = this.channel.size();
+	}
+
+	@Override
+	public Iterator<GameRecord> iterator() {
+		return new Iterator<GameRecord>() {
+
+			// the file offset of the window, and the window itself
+			private long windowStart = 0;
+			private MappedByteBuffer window = null;
+
+			@Override
+			public boolean hasNext() {
+				final long position = this.windowStart + (this.window == null ? 0 : this.window.position());
+				return position < GameRecordReader.this.fileSize;
+			}
+
+			@Override
+			public GameRecord next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				// remap when the next record does not fit in what is left of the window
+				if (this.window == null || this.window.remaining() < 4
+						|| this.window.getInt(this.window.position()) > this.window.remaining() - 4) {
+					this.remap();
+				}
+
+				return GameRecord.decode(this.window);
+			}
+
+			private void remap() {
+				if (this.window != null) {
+					this.windowStart += this.window.position();
+				}
+
+				final long length = Math.min(WINDOW_SIZE, GameRecordReader.this.fileSize - this.windowStart);
+
+				try {
+					this.window = GameRecordReader.this.channel.map(FileChannel.MapMode.READ_ONLY, this.windowStart,
+							length);
+				} catch (final IOException e) {
+					throw new IllegalStateException("Could not map the record file", e);
+				}
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.channel.close();
+	}
+}
@@ -0,0 +1,50 @@
+package record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class appends finished game records to a file. It can be shared by any
+ * number of threads: each record is written in a single append, so records
+ * from different threads never interleave.
+ * 
+ * @author Aaron Tetens
+ */
+public class GameRecordWriter implements Closeable {
+
+	private final FileChannel channel;
+
+	/**
+	 * @param file
+	 *            The file to append to (created if it does not exist)
+	 * @throws IOException
+	 *             If the file could not be opened
+	 */
+	public GameRecordWriter(final Path file) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * @param record
+	 *            The record to append
+	 * @throws IOException
+	 *             If the record could not be written
+	 */
+	public synchronized void append(final GameRecord record) throws IOException {
+		final ByteBuffer buffer = record.encode();
+
+		while (buffer.hasRemaining()) {
+			this.channel.write(buffer);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		this.channel.close();
+	}
+}
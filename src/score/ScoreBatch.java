@@ -0,0 +1,332 @@
+package score;
+
+import java.util.List;
+
+import state.Player;
+
+/**
+ * This class scores many games at once. Instead of walking each player's field,
+ * every game is stored as columns of card counts (struct of arrays), laid out
+ * player-major so that each column of a single player is contiguous across
+ * games. The scoring loops are then simple branch-free passes over those
+ * columns that the JIT can auto-vectorize.
+ * 
+ * @author Aaron Tetens
+ */
+public class ScoreBatch {
+
+	private final int numGames;
+	private final int numPlayers;
+
+	// each column is indexed by player * numGames + game
+	private final int[] sashimi;
+	private final int[] tempura;
+	private final int[] dumplings;
+	private final int[] nigiri;
+	private final int[] wasabiNigiri; // in points before the wasabi bonus
+	private final int[] maki;
+	private final int[] puddings;
+	private final int[] scores;
+
+	// per game contest results, reused between calls
+	private final int[] mostMaki;
+	private final int[] secondMostMaki;
+	private final int[] firstMakiPoints;
+	private final int[] secondMakiPoints;
+	private final int[] mostPuddings;
+	private final int[] leastPuddings;
+	private final int[] mostPuddingsPoints;
+	private final int[] leastPuddingsPoints;
+
+	/**
+	 * @param numGames
+	 *            The number of games in the batch
+	 * @param numPlayers
+	 *            The number of players in every game of the batch
+	 */
+	public ScoreBatch(final int numGames, final int numPlayers) {
+		this.numGames = numGames;
+		this.numPlayers = numPlayers;
+
+		final int size = numGames * numPlayers;
+		this.sashimi = new int[size];
+		this.tempura = new int[size];
+		this.dumplings = new int[size];
+		this.nigiri = new int[size];
+		this.wasabiNigiri = new int[size];
+		this.maki = new int[size];
+		this.puddings = new int[size];
+		this.scores = new int[size];
+
+		this.mostMaki = new int[numGames];
+		this.secondMostMaki = new int[numGames];
+		this.firstMakiPoints = new int[numGames];
+		this.secondMakiPoints = new int[numGames];
+		this.mostPuddings = new int[numGames];
+		this.leastPuddings = new int[numGames];
+		this.mostPuddingsPoints = new int[numGames];
+		this.leastPuddingsPoints = new int[numGames];
+	}
+
+	/**
+	 * Copies the fields and scores of the given players into the batch.
+	 * 
+	 * @param game
+	 *            The index of the game in the batch
+	 * @param players
+	 *            The players of that game
+	 * @throws IllegalArgumentException
+	 *             If the number of players does not match the batch
+	 */
+	public void setGame(final int game, final Player[] players) throws IllegalArgumentException {
+		if (players.length != this.numPlayers) {
+			throw new IllegalArgumentException(
+					"Tried to add a " + players.length + " player game to a " + this.numPlayers + " player batch");
+		}
+
+		for (int i = 0; i < players.length; i++) {
+			final List<String> field = players[i].getField();
+			final long signature = Scoring.getFieldSignature(field);
+
+			this.setPlayer(game, i, Scoring.getCount(signature, Scoring.SASHIMI),
+					Scoring.getCount(signature, Scoring.TEMPURA), Scoring.getCount(signature, Scoring.DUMPLING),
+					Scoring.getNigiriPoints(signature, Scoring.NIGIRI),
+					Scoring.getNigiriPoints(signature, Scoring.WASABI_NIGIRI), players[i].getNumMaki(),
+					players[i].getNumPuddings(), players[i].getScore());
+		}
+	}
+
+	/**
+	 * @param game
+	 *            The index of the game in the batch
+	 * @param player
+	 *            The index of the player in that game
+	 * @param numSashimi
+	 *            The number of sashimi in the player's field
+	 * @param numTempura
+	 *            The number of tempura in the player's field
+	 * @param numDumplings
+	 *            The number of dumplings in the player's field
+	 * @param nigiriPoints
+	 *            The points of the nigiri that were not played on wasabi
+	 * @param wasabiNigiriPoints
+	 *            The points of the nigiri that were played on wasabi (before
+	 *            tripling)
+	 * @param numMaki
+	 *            The number of maki icons in the player's field
+	 * @param numPuddings
+	 *            The number of puddings the player has
+	 * @param score
+	 *            The player's score before this round
+	 */
+	public void setPlayer(final int game, final int player, final int numSashimi, final int numTempura,
+			final int numDumplings, final int nigiriPoints, final int wasabiNigiriPoints, final int numMaki,
+			final int numPuddings, final int score) {
+
+		final int index = player * this.numGames + game;
+
+		this.sashimi[index] = numSashimi;
+		this.tempura[index] = numTempura;
+		this.dumplings[index] = numDumplings;
+		this.nigiri[index] = nigiriPoints;
+		this.wasabiNigiri[index] = wasabiNigiriPoints;
+		this.maki[index] = numMaki;
+		this.puddings[index] = numPuddings;
+		this.scores[index] = score;
+	}
+
+	/**
+	 * Scores the end of the given round for every game in the batch, following
+	 * the same rules as {@link Scoring#updateScores}.
+	 * 
+	 * @param currentRound
+	 *            The round that just ended
+	 */
+	public void scoreRound(final int currentRound) {
+		final int size = this.numGames * this.numPlayers;
+
+		// non-contest cards
+		for (int i = 0; i < size; i++) {
+			final int numDumplings = this.dumplings[i];
+			final int leftoverDumplings = numDumplings % 5;
+
+			this.scores[i] += this.nigiri[i] + 3 * this.wasabiNigiri[i] + 10 * (this.sashimi[i] / 3)
+					+ 5 * (this.tempura[i] / 2) + 15 * (numDumplings / 5)
+					+ leftoverDumplings * (leftoverDumplings + 1) / 2;
+		}
+
+		// maki
+		this.findContestWinners(this.maki, this.mostMaki, this.firstMakiPoints, 6);
+		this.findSecondPlace();
+
+		for (int player = 0; player < this.numPlayers; player++) {
+			final int offset = player * this.numGames;
+
+			for (int game = 0; game < this.numGames; game++) {
+				final int numMaki = this.maki[offset + game];
+
+				this.scores[offset + game] += (numMaki == this.mostMaki[game] ? this.firstMakiPoints[game] : 0)
+						+ (numMaki == this.secondMostMaki[game] ? this.secondMakiPoints[game] : 0);
+			}
+		}
+
+		if (currentRound != 3) {
+			return;
+		}
+
+		// pudding
+		this.findContestWinners(this.puddings, this.mostPuddings, this.mostPuddingsPoints, 6);
+		this.findContestLosers();
+
+		for (int player = 0; player < this.numPlayers; player++) {
+			final int offset = player * this.numGames;
+
+			for (int game = 0; game < this.numGames; game++) {
+				final int numPuddings = this.puddings[offset + game];
+
+				this.scores[offset + game] += (numPuddings == this.mostPuddings[game]
+						? this.mostPuddingsPoints[game]
+						: 0) + (numPuddings == this.leastPuddings[game] ? this.leastPuddingsPoints[game] : 0);
+			}
+		}
+	}
+
+	/**
+	 * Finds the highest value of each game and splits the given points between
+	 * every player that has it.
+	 * 
+	 * @param values
+	 *            The column to compare
+	 * @param best
+	 *            The array to write the highest value of each game to
+	 * @param points
+	 *            The array to write the points each winner receives to
+	 * @param totalPoints
+	 *            The points that are split between the winners
+	 */
+	private void findContestWinners(final int[] values, final int[] best, final int[] points,
+			final int totalPoints) {
+
+		for (int game = 0; game < this.numGames; game++) {
+			best[game] = values[game];
+		}
+
+		for (int player = 1; player < this.numPlayers; player++) {
+			final int offset = player * this.numGames;
+
+			for (int game = 0; game < this.numGames; game++) {
+				best[game] = Math.max(best[game], values[offset + game]);
+			}
+		}
+
+		// points temporarily holds the number of winners
+		for (int game = 0; game < this.numGames; game++) {
+			points[game] = 0;
+		}
+
+		for (int player = 0; player < this.numPlayers; player++) {
+			final int offset = player * this.numGames;
+
+			for (int game = 0; game < this.numGames; game++) {
+				points[game] += values[offset + game] == best[game] ? 1 : 0;
+			}
+		}
+
+		for (int game = 0; game < this.numGames; game++) {
+			points[game] = totalPoints / points[game];
+		}
+	}
+
+	/**
+	 * Finds second place in maki. Second place only exists if there is a single
+	 * first place, and players need at least one maki to place.
+	 */
+	private void findSecondPlace() {
+		for (int game = 0; game < this.numGames; game++) {
+			this.secondMostMaki[game] = 0;
+			this.secondMakiPoints[game] = 0;
+		}
+
+		for (int player = 0; player < this.numPlayers; player++) {
+			final int offset = player * this.numGames;
+
+			for (int game = 0; game < this.numGames; game++) {
+				final int numMaki = this.maki[offset + game];
+
+				this.secondMostMaki[game] = Math.max(this.secondMostMaki[game],
+						numMaki < this.mostMaki[game] ? numMaki : 0);
+			}
+		}
+
+		for (int player = 0; player < this.numPlayers; player++) {
+			final int offset = player * this.numGames;
+
+			for (int game = 0; game < this.numGames; game++) {
+				this.secondMakiPoints[game] += this.maki[offset + game] == this.secondMostMaki[game] ? 1 : 0;
+			}
+		}
+
+		for (int game = 0; game < this.numGames; game++) {
+			final boolean awarded = this.mostMaki[game] >= 1 && this.firstMakiPoints[game] == 6
+					&& this.secondMostMaki[game] >= 1;
+
+			this.secondMakiPoints[game] = awarded ? 3 / this.secondMakiPoints[game] : 0;
+
+			// nobody wins first place without any maki
+			this.firstMakiPoints[game] = this.mostMaki[game] >= 1 ? this.firstMakiPoints[game] : 0;
+		}
+	}
+
+	/**
+	 * Finds the players with the least puddings in each game (only penalized if
+	 * there are more than 2 players).
+	 */
+	private void findContestLosers() {
+		for (int game = 0; game < this.numGames; game++) {
+			this.leastPuddings[game] = this.puddings[game];
+			this.leastPuddingsPoints[game] = 0;
+		}
+
+		for (int player = 1; player < this.numPlayers; player++) {
+			final int offset = player * this.numGames;
+
+			for (int game = 0; game < this.numGames; game++) {
+				this.leastPuddings[game] = Math.min(this.leastPuddings[game], this.puddings[offset + game]);
+			}
+		}
+
+		if (this.numPlayers <= 2) {
+			return;
+		}
+
+		for (int player = 0; player < this.numPlayers; player++) {
+			final int offset = player * this.numGames;
+
+			for (int game = 0; game < this.numGames; game++) {
+				this.leastPuddingsPoints[game] += this.puddings[offset + game] == this.leastPuddings[game] ? 1 : 0;
+			}
+		}
+
+		for (int game = 0; game < this.numGames; game++) {
+			this.leastPuddingsPoints[game] = -6 / this.leastPuddingsPoints[game];
+		}
+	}
+
+	/**
+	 * @param game
+	 *            The index of the game in the batch
+	 * @param player
+	 *            The index of the player in that game
+	 * @return The player's score
+	 */
+	public int getScore(final int game, final int player) {
+		return this.scores[player * this.numGames + game];
+	}
+
+	/**
+	 * @return The number of games in the batch
+	 */
+	public int getNumGames() {
+		return this.numGames;
+	}
+}
@@ -1,10 +1,6 @@
 package score;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Pattern;
 
 import state.Player;
 
@@ -16,132 +12,225 @@ import state.Player;
  */
 public class Scoring {
 
-	private final static Map<Integer, Integer> DUMPLING_SCORES = new HashMap<>();
-	static {
-		DUMPLING_SCORES.put(0, 0);
-		DUMPLING_SCORES.put(1, 1);
-		DUMPLING_SCORES.put(2, 3);
-		DUMPLING_SCORES.put(3, 6);
-		DUMPLING_SCORES.put(4, 10);
+	private final static int[] DUMPLING_SCORES = { 0, 1, 3, 6, 10 };
+
+	// a field signature packs 5-bit counts in this order (a round never has more
+	// than 10 cards in the field, so the counts never overflow)
+	static final int SASHIMI = 0;
+	static final int TEMPURA = 1;
+	static final int DUMPLING = 2;
+	static final int NIGIRI = 3; // + value - 1
+	static final int WASABI_NIGIRI = 6; // + value - 1
+	private static final int COUNT_BITS = 5;
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+	/**
+	 * @param field
+	 *            The field to score, in the order the cards were played
+	 * @return The points the given field earns from non-contest cards (everything
+	 *         except maki and pudding)
+	 */
+	public static int scoreField(final List<String> field) {
+		return scoreSignature(getFieldSignature(field));
 	}
 
-	public static void updateScores(final Player[] players, final int currentRound) {
-		// score non-contest cards for each player
-		for (int i = 0; i < players.length; i++) {
-			int numWasabi = 0;
-			int numSashimi = 0;
-			int numTempura = 0;
-			int numDumplings = 0;
-			int score = 0;
-
-			for (final String card : players[i].getField()) {
-				if (card.equals("W")) {
-					numWasabi++;
-				} else if (Pattern.matches("[123]N", card)) {
-					final int nigiriValue = Integer.parseInt(card.substring(0, 1));
-
-					if (numWasabi > 0) {
-						score += nigiriValue * 3;
-						numWasabi--;
-					} else {
-						score += nigiriValue;
-					}
-				} else if (card.equals("S")) {
-					numSashimi++;
-				} else if (card.equals("T")) {
-					numTempura++;
-				} else if (card.equals("D")) {
-					numDumplings++;
+	/**
+	 * @param field
+	 *            The field to get the signature of, in the order the cards were
+	 *            played
+	 * @return The number of sashimi, tempura, dumplings and nigiri (split by
+	 *         whether or not they were played on wasabi) in the field, packed into
+	 *         a single value. Two fields with the same signature always have the
+	 *         same non-contest score.
+	 */
+	static long getFieldSignature(final List<String> field) {
+		int numWasabi = 0;
+		long signature = 0;
+
+		for (final String card : field) {
+			switch (card.charAt(card.length() - 1)) {
+			case 'W':
+				numWasabi++;
+				break;
+			case 'N':
+				final int nigiriValue = card.charAt(0) - '0';
+
+				if (numWasabi > 0) {
+					signature += 1L << (COUNT_BITS * (WASABI_NIGIRI + nigiriValue - 1));
+					numWasabi--;
+				} else {
+					signature += 1L << (COUNT_BITS * (NIGIRI + nigiriValue - 1));
 				}
+				break;
+			case 'S':
+				signature += 1L << (COUNT_BITS * SASHIMI);
+				break;
+			case 'T':
+				signature += 1L << (COUNT_BITS * TEMPURA);
+				break;
+			case 'D':
+				signature += 1L << (COUNT_BITS * DUMPLING);
+				break;
+			default:
+				break;
 			}
+		}
+
+		return signature;
+	}
+
+	/**
+	 * @param signature
+	 *            A field signature from {@link #getFieldSignature}
+	 * @return The non-contest score of any field with the given signature
+	 */
+	static int scoreSignature(final long signature) {
+		int score = getNigiriPoints(signature, NIGIRI) + 3 * getNigiriPoints(signature, WASABI_NIGIRI);
+
+		final int numDumplings = getCount(signature, DUMPLING);
+
+		score += 10 * (getCount(signature, SASHIMI) / 3);
+		score += 5 * (getCount(signature, TEMPURA) / 2);
+		score += 15 * (numDumplings / 5) + DUMPLING_SCORES[numDumplings % 5];
+
+		return score;
+	}
 
-			score += 10 * (numSashimi / 3);
-			score += 5 * (numTempura / 2);
-			score += 15 * (numDumplings / 5) + DUMPLING_SCORES.get(numDumplings % 5);
+	/**
+	 * @param signature
+	 *            A field signature from {@link #getFieldSignature}
+	 * @param count
+	 *            Which count to get (e.g. {@link #SASHIMI})
+	 * @return The given count in the signature
+	 */
+	static int getCount(final long signature, final int count) {
+		return (int) ((signature >>> (COUNT_BITS * count)) & COUNT_MASK);
+	}
 
-			players[i].addScore(score);
+	/**
+	 * @param signature
+	 *            A field signature from {@link #getFieldSignature}
+	 * @param nigiri
+	 *            Either {@link #NIGIRI} or {@link #WASABI_NIGIRI}
+	 * @return The face value of those nigiri added together
+	 */
+	static int getNigiriPoints(final long signature, final int nigiri) {
+		int points = 0;
+		for (int value = 1; value <= 3; value++) {
+			points += value * getCount(signature, nigiri + value - 1);
 		}
 
-		// score maki
-		int mostMaki = 1;
-		int secondMostMaki = 1;
-		final List<Player> firstMakiWinners = new ArrayList<>();
-		final List<Player> secondMakiWinners = new ArrayList<>();
-
-		for (final Player player : players) {
-			final int numMaki = player.getNumMaki();
-
-			if (numMaki > mostMaki) {
-				mostMaki = numMaki;
-
-				secondMakiWinners.clear();
-				secondMakiWinners.addAll(firstMakiWinners);
-				firstMakiWinners.clear();
-				firstMakiWinners.add(player);
-			} else if (numMaki == mostMaki) {
-				firstMakiWinners.add(player);
-			} else if (numMaki > secondMostMaki) {
-				secondMostMaki = numMaki;
-
-				secondMakiWinners.clear();
-				secondMakiWinners.add(player);
-			} else if (numMaki == secondMostMaki) {
-				secondMakiWinners.add(player);
-			}
+		return points;
+	}
+
+	public static void updateScores(final Player[] players, final int currentRound) {
+		final int[] maki = new int[players.length];
+		final int[] puddings = new int[players.length];
+
+		// score non-contest cards for each player
+		for (int i = 0; i < players.length; i++) {
+			players[i].addScore(scoreField(players[i].getField()));
+
+			maki[i] = players[i].getNumMaki();
+			puddings[i] = players[i].getNumPuddings();
 		}
 
-		if (firstMakiWinners.size() == 1) {
-			firstMakiWinners.get(0).addScore(6);
+		// score maki (you need at least one maki to place)
+		final int mostMaki = max(maki, Integer.MAX_VALUE);
+
+		if (mostMaki >= 1) {
+			final int numFirstMakiWinners = count(maki, mostMaki);
+
+			if (numFirstMakiWinners == 1) {
+				award(players, maki, mostMaki, 6);
 
-			if (!secondMakiWinners.isEmpty()) {
-				for (final Player secondMakiWinner : secondMakiWinners) {
-					secondMakiWinner.addScore(3 / secondMakiWinners.size());
+				// second place is only awarded if there is a single first place
+				final int secondMostMaki = max(maki, mostMaki);
+				if (secondMostMaki >= 1) {
+					award(players, maki, secondMostMaki, 3 / count(maki, secondMostMaki));
 				}
-			}
-		} else if (firstMakiWinners.size() > 1) {
-			for (final Player firstMakiWinner : firstMakiWinners) {
-				firstMakiWinner.addScore(6 / firstMakiWinners.size());
+			} else {
+				award(players, maki, mostMaki, 6 / numFirstMakiWinners);
 			}
 		}
 
 		// if this is the last round, score pudding
 		if (currentRound == 3) {
-			int mostPuddings = 0;
-			int leastPuddings = Integer.MAX_VALUE;
-			final List<Player> mostPuddingsPlayers = new ArrayList<>();
-			final List<Player> leastPuddingsPlayers = new ArrayList<>();
+			final int mostPuddings = max(puddings, Integer.MAX_VALUE);
+			award(players, puddings, mostPuddings, 6 / count(puddings, mostPuddings));
 
-			for (final Player player : players) {
-				final int numPuddings = player.getNumPuddings();
+			// Only lose points for least pudding if more than 2 players
+			if (players.length > 2) {
+				final int leastPuddings = min(puddings);
+				award(players, puddings, leastPuddings, -6 / count(puddings, leastPuddings));
+			}
+		}
+	}
 
-				if (numPuddings > mostPuddings) {
-					mostPuddings = numPuddings;
+	/**
+	 * @param values
+	 *            The values to search
+	 * @param limit
+	 *            Only values below this limit are considered
+	 * @return The largest value below the limit, or -1 if there is none
+	 */
+	private static int max(final int[] values, final int limit) {
+		int max = -1;
+		for (final int value : values) {
+			if (value < limit && value > max) {
+				max = value;
+			}
+		}
 
-					mostPuddingsPlayers.clear();
-					mostPuddingsPlayers.add(player);
-				} else if (numPuddings == mostPuddings) {
-					mostPuddingsPlayers.add(player);
-				}
+		return max;
+	}
 
-				if (numPuddings < leastPuddings) {
-					leastPuddings = numPuddings;
+	/**
+	 * @param values
+	 *            The values to search
+	 * @return The smallest value
+	 */
+	private static int min(final int[] values) {
+		int min = Integer.MAX_VALUE;
+		for (final int value : values) {
+			min = Math.min(min, value);
+		}
 
-					leastPuddingsPlayers.clear();
-					leastPuddingsPlayers.add(player);
-				} else if (numPuddings == leastPuddings) {
-					leastPuddingsPlayers.add(player);
-				}
-			}
+		return min;
+	}
 
-			for (final Player player : mostPuddingsPlayers) {
-				player.addScore(6 / mostPuddingsPlayers.size());
+	/**
+	 * @param values
+	 *            The values to search
+	 * @param target
+	 *            The value to count
+	 * @return The number of times the target appears in the values
+	 */
+	private static int count(final int[] values, final int target) {
+		int count = 0;
+		for (final int value : values) {
+			if (value == target) {
+				count++;
 			}
+		}
 
-			// Only lose points for least pudding if more than 2 players
-			if (players.length > 2) {
-				for (final Player player : leastPuddingsPlayers) {
-					player.addScore(-6 / leastPuddingsPlayers.size());
-				}
+		return count;
+	}
+
+	/**
+	 * @param players
+	 *            The players in the game
+	 * @param values
+	 *            Each player's value in the contest
+	 * @param target
+	 *            The value a player needs to receive the points
+	 * @param points
+	 *            The points to give each player with the target value
+	 */
+	private static void award(final Player[] players, final int[] values, final int target, final int points) {
+		for (int i = 0; i < players.length; i++) {
+			if (values[i] == target) {
+				players[i].addScore(points);
 			}
 		}
 	}
@@ -0,0 +1,28 @@
+package search;
+
+import api.GameState;
+
+/**
+ * This interface is implemented by game states whose chance events (such as
+ * hidden cards and deals) can be drawn from a chosen sample instead of fresh
+ * random numbers. Reusing samples lets the search compare moves under the same
+ * luck, which separates close moves in far fewer iterations.
+ * 
+ * @author Aaron Tetens
+ */
+public interface ChanceSeedable {
+
+	/**
+	 * @param seed
+	 *            The seed of the sample's random numbers
+	 * @param antithetic
+	 *            Whether to mirror every random number (u becomes 1 - u)
+	 * @param stratum
+	 *            Which stratum the first random number is drawn from
+	 * @param numStrata
+	 *            The number of equal strata [0, 1) is split into
+	 * @return A copy of this state whose rollout draws every chance event from the
+	 *         given sample
+	 */
+	GameState withChanceSample(long seed, boolean antithetic, int stratum, int numStrata);
+}
@@ -0,0 +1,50 @@
+package search;
+
+import api.GameState;
+
+/**
+ * This class holds the search statistics of a single move from the root.
+ * 
+ * @author Aaron Tetens
+ */
+public class MoveStatistics {
+
+	private final GameState state;
+	private final int visits;
+	private final double value;
+
+	/**
+	 * @param state
+	 *            The state the move leads to
+	 * @param visits
+	 *            The number of simulations through the move
+	 * @param value
+	 *            The total reward of those simulations
+	 */
+	MoveStatistics(final GameState state, final int visits, final double value) {
+		this.state = state;
+		this.visits = visits;
+		this.value = value;
+	}
+
+	/**
+	 * @return The state the move leads to
+	 */
+	public GameState getState() {
+		return this.state;
+	}
+
+	/**
+	 * @return The number of simulations through the move
+	 */
+	public int getVisits() {
+		return this.visits;
+	}
+
+	/**
+	 * @return The average reward of the simulations through the move
+	 */
+	public double getMeanValue() {
+		return this.visits == 0 ? 0.0 : this.value / this.visits;
+	}
+}
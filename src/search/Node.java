@@ -0,0 +1,167 @@
+package search;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import api.GameState;
+
+/**
+ * This class is a node of a search tree that is shared by every search thread.
+ * None of its methods block: the statistics are atomic counters, and the
+ * children are published with a single compare-and-set so exactly one thread
+ * ever expands a node.
+ * 
+ * @author Aaron Tetens
+ */
+class Node {
+
+	// marks a node whose children are being generated by another thread
+	private static final Node[] EXPANDING = new Node[0];
+
+	private final GameState state;
+	private final Node parent;
+
+	private final AtomicReference<Node[]> children;
+
+	private final AtomicInteger visits;
+	private final DoubleAdder value;
+
+	// the number of threads currently searching below this node
+	private final AtomicInteger virtualLoss;
+
+	// the number of chance samples handed out to rollouts below this node
+	private final AtomicInteger samples;
+
+	/**
+	 * @param state
+	 *            The state this node represents
+	 * @param parent
+	 *            The parent of this node, null for the root
+	 */
+	Node(final GameState state, final Node parent) {
+		this.state = state;
+		this.parent = parent;
+
+		this.children = new AtomicReference<>();
+
+		this.visits = new AtomicInteger();
+		this.value = new DoubleAdder();
+
+		this.virtualLoss = new AtomicInteger();
+
+		this.samples = new AtomicInteger();
+	}
+
+	/**
+	 * Generates the children of this node if no other thread has done so yet.
+	 * 
+	 * @return Whether or not this thread expanded the node
+	 */
+	boolean tryExpand() {
+		if (!this.children.compareAndSet(null, EXPANDING)) {
+			return false;
+		}
+
+		final List<GameState> nextStates = this.state.getNextStates();
+		final Node[] newChildren = new Node[nextStates.size()];
+
+		for (int i = 0; i < newChildren.length; i++) {
+			newChildren[i] = new Node(nextStates.get(i), this);
+		}
+
+		this.children.set(newChildren);
+		return true;
+	}
+
+	/**
+	 * @return The children of this node (empty if the node is a leaf or is still
+	 *         being expanded)
+	 */
+	Node[] getChildren() {
+		final Node[] currentChildren = this.children.get();
+		return currentChildren == null ? EXPANDING : currentChildren;
+	}
+
+	/**
+	 * @return Whether or not some thread has started expanding this node
+	 */
+	boolean isExpanded() {
+		return this.children.get() != null;
+	}
+
+	/**
+	 * Marks that a thread is searching below this node. Until the result is
+	 * backpropagated, the visit counts as a loss so other threads pick other
+	 * paths.
+	 */
+	void addVirtualLoss() {
+		this.virtualLoss.incrementAndGet();
+	}
+
+	/**
+	 * @param reward
+	 *            The reward of the finished simulation for the player that moved
+	 *            into this node
+	 */
+	void update(final double reward) {
+		this.value.add(reward);
+		this.visits.incrementAndGet();
+		this.virtualLoss.decrementAndGet();
+	}
+
+	/**
+	 * @param explorationConstant
+	 *            How much to favor less visited nodes
+	 * @return The UCT value of this node, counting in-flight simulations as
+	 *         losses
+	 */
+	double getUct(final double explorationConstant) {
+		final int effectiveVisits = this.visits.get() + this.virtualLoss.get();
+
+		if (effectiveVisits == 0) {
+			return Double.POSITIVE_INFINITY;
+		}
+
+		final int parentVisits = this.parent.visits.get() + this.parent.virtualLoss.get();
+
+		return this.value.sum() / effectiveVisits
+				+ explorationConstant * Math.sqrt(Math.log(parentVisits) / effectiveVisits);
+	}
+
+	/**
+	 * @return The index of the next chance sample for a rollout below this node
+	 */
+	int nextSample() {
+		return this.samples.getAndIncrement();
+	}
+
+	/**
+	 * @return The state this node represents
+	 */
+	GameState getState() {
+		return this.state;
+	}
+
+	/**
+	 * @return The parent of this node, null for the root
+	 */
+	Node getParent() {
+		return this.parent;
+	}
+
+	/**
+	 * @return The number of finished simulations through this node
+	 */
+	int getVisits() {
+		return this.visits.get();
+	}
+
+	/**
+	 * @return The total reward of the finished simulations through this node
+	 */
+	double getValue() {
+		return this.value.sum();
+	}
+}
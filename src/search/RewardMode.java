@@ -0,0 +1,25 @@
+package search;
+
+/**
+ * This enum lists the ways a finished game can be turned into a reward for each
+ * player.
+ * 
+ * @author Aaron Tetens
+ */
+public enum RewardMode {
+
+	/**
+	 * 1 for a win (split between tied winners), 0 otherwise.
+	 */
+	WIN_LOSS,
+
+	/**
+	 * 0.5 plus the margin over the best opponent, scaled into [0, 1].
+	 */
+	SCORE_MARGIN,
+
+	/**
+	 * The fraction of opponents finished ahead of (ties count half).
+	 */
+	RANK
+}
@@ -0,0 +1,33 @@
+package search;
+
+/**
+ * This interface is implemented by game states that can score a finished game
+ * directly into an array, without building a list of winners. The search reuses
+ * one array per thread, so checking for the end of a rollout and scoring it
+ * never allocates.
+ * 
+ * @author Aaron Tetens
+ */
+public interface Rewardable {
+
+	/**
+	 * @return Whether or not the game is over (or the rollout was cut off)
+	 */
+	boolean isGameOver();
+
+	/**
+	 * @return The number of players in the game
+	 */
+	int getNumPlayers();
+
+	/**
+	 * This method assumes that the game is over.
+	 * 
+	 * @param mode
+	 *            How to turn the final scores into rewards
+	 * @param rewards
+	 *            The array to write each player's reward (0-1) to, at least
+	 *            {@link #getNumPlayers()} long
+	 */
+	void getRewards(RewardMode mode, double[] rewards);
+}
@@ -0,0 +1,454 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import api.GameState;
+
+/**
+ * This class runs MCTS with every thread working on one shared tree (as opposed
+ * to giving each thread its own tree). Opponent plays and deals are only
+ * simulated in rollouts (a state has no next states once the AI has played), so
+ * the tree is always the root and one ply of AI moves. Sharing it means every
+ * thread adds to the same move statistics, and virtual loss spreads the threads'
+ * rollouts over the root moves instead of piling them onto the same one.
+ * 
+ * @author Aaron Tetens
+ */
+public class SharedTreeSearch {
+
+	private static final double EXPLORATION_CONSTANT = Math.sqrt(2);
+
+	private static final int NUM_STRATA = 8;
+
+	// how often the calling thread checks on a search with a time range
+	private static final long MONITOR_MILLIS = 5;
+
+	// a single threaded search checks the clock after this many iterations
+	private static final int CHECK_ITERATIONS = 16;
+
+	// a search with a time range never stops before this fraction of its target
+	private static final double MIN_TARGET_FRACTION = 0.25;
+
+	// past its target, a search keeps going while the second most visited move has
+	// at least this fraction of the most visited move's visits
+	private static final double CLOSE_FRACTION = 0.8;
+
+	// whether rollouts draw their chance events from shared samples, and how many
+	// antithetic pairs of samples are shared (0 means every pair is new)
+	private static volatile boolean varianceReduced = false;
+	private static volatile int numSharedSamples = 0;
+
+	// how states that implement Rewardable score the end of a rollout
+	private static volatile RewardMode rewardMode = RewardMode.WIN_LOSS;
+
+	// reused by every rollout on the same thread (5 is the most players)
+	private static final ThreadLocal<double[]> REWARDS = ThreadLocal.withInitial(() -> new double[5]);
+
+	/**
+	 * With variance reduction on, the n-th rollout below every root move uses the
+	 * same chance sample (common random numbers), samples come in antithetic pairs,
+	 * and the first random number of each pair is stratified. This only applies to
+	 * states that implement {@link ChanceSeedable}.
+	 * 
+	 * @param enabled
+	 *            Whether or not to reduce the variance of chance events
+	 * @param numShared
+	 *            If positive, only this many pairs of samples are used, so the same
+	 *            few deals are shared by every sibling rollout
+	 */
+	public static void setChanceSampling(final boolean enabled, final int numShared) {
+		numSharedSamples = Math.max(0, numShared);
+		varianceReduced = enabled;
+	}
+
+	/**
+	 * @param mode
+	 *            How finished rollouts are turned into rewards (only applies to
+	 *            states that implement {@link Rewardable})
+	 */
+	public static void setRewardMode(final RewardMode mode) {
+		rewardMode = mode;
+	}
+
+	/**
+	 * @param state
+	 *            The state to search from
+	 * @param seconds
+	 *            How long to search for
+	 * @param numThreads
+	 *            The number of threads that grow the tree
+	 * @return The most visited next state
+	 * @throws IllegalArgumentException
+	 *             If the given state has no next states
+	 */
+	public static GameState search(final GameState state, final long seconds, final int numThreads)
+			throws IllegalArgumentException {
+
+		return getMostVisited(searchTree(state, seconds * 1000, seconds * 1000, numThreads));
+	}
+
+	/**
+	 * This method searches for about targetMillis. It stops early (after at least a
+	 * quarter of the target) once the most visited move can not be overtaken before
+	 * the target, and it keeps going past the target (up to maxMillis) while the
+	 * two most visited moves are close.
+	 * 
+	 * @param state
+	 *            The state to search from
+	 * @param targetMillis
+	 *            How long the search should take
+	 * @param maxMillis
+	 *            The longest the search may take
+	 * @param numThreads
+	 *            The number of threads that grow the tree
+	 * @return The most visited next state
+	 * @throws IllegalArgumentException
+	 *             If the given state has no next states
+	 */
+	public static GameState search(final GameState state, final long targetMillis, final long maxMillis,
+			final int numThreads) throws IllegalArgumentException {
+
+		return getMostVisited(searchTree(state, targetMillis, Math.max(targetMillis, maxMillis), numThreads));
+	}
+
+	/**
+	 * @param state
+	 *            The state to search from
+	 * @param millis
+	 *            How long to search for
+	 * @param numThreads
+	 *            The number of threads that grow the tree
+	 * @return The statistics of every move from the given state, most visited
+	 *         first
+	 */
+	public static List<MoveStatistics> analyze(final GameState state, final long millis, final int numThreads) {
+		final Node root = searchTree(state, millis, millis, numThreads);
+
+		final List<MoveStatistics> moves = new ArrayList<>();
+		for (final Node child : root.getChildren()) {
+			moves.add(new MoveStatistics(child.getState(), child.getVisits(), child.getValue()));
+		}
+
+		moves.sort((a, b) -> Integer.compare(b.getVisits(), a.getVisits()));
+
+		return moves;
+	}
+
+	/**
+	 * @param state
+	 *            The state to search from
+	 * @param targetMillis
+	 *            How long the search should take
+	 * @param maxMillis
+	 *            The longest the search may take (the same as targetMillis for a
+	 *            search with a fixed length)
+	 * @param numThreads
+	 *            The number of threads that grow the tree (1 searches on the calling
+	 *            thread)
+	 * @return The root of the searched tree
+	 */
+	static Node searchTree(final GameState state, final long targetMillis, final long maxMillis,
+			final int numThreads) {
+
+		final Node root = new Node(state, null);
+		root.tryExpand();
+
+		final long start = System.currentTimeMillis();
+		final long searchSeed = ThreadLocalRandom.current().nextLong();
+
+		// a single thread searches on the calling thread, so callers that already run
+		// searches on a pool of their own never start another thread
+		if (numThreads <= 1) {
+			long elapsed = 0;
+
+			while (elapsed < maxMillis && !(targetMillis < maxMillis && isSettled(root, elapsed, targetMillis))
+					&& !Thread.currentThread().isInterrupted()) {
+				for (int i = 0; i < CHECK_ITERATIONS; i++) {
+					iterate(root, searchSeed);
+				}
+
+				elapsed = System.currentTimeMillis() - start;
+			}
+
+			return root;
+		}
+
+		final AtomicBoolean done = new AtomicBoolean(false);
+
+		final ExecutorService workers = Executors.newFixedThreadPool(numThreads);
+		final List<Future<?>> results = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < numThreads; i++) {
+				results.add(workers.submit(() -> {
+					while (!done.get()) {
+						iterate(root, searchSeed);
+					}
+				}));
+			}
+
+			// the calling thread decides when the search is over (or stops it early if a
+			// worker failed)
+			long elapsed = 0;
+			while (elapsed < maxMillis && !(targetMillis < maxMillis && isSettled(root, elapsed, targetMillis))
+					&& !anyDone(results)) {
+				try {
+					Thread.sleep(Math.min(MONITOR_MILLIS, maxMillis - elapsed));
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+
+				elapsed = System.currentTimeMillis() - start;
+			}
+		} finally {
+			done.set(true);
+			workers.shutdown();
+		}
+
+		awaitAll(results);
+
+		return root;
+	}
+
+	/**
+	 * @param results
+	 *            The results of the search workers
+	 * @return Whether or not any worker has stopped (workers only stop on their own
+	 *         if they failed)
+	 */
+	private static boolean anyDone(final List<Future<?>> results) {
+		for (final Future<?> result : results) {
+			if (result.isDone()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Waits for every worker to stop, even if the calling thread is interrupted (so
+	 * no worker is still changing the tree once the search returns), and then
+	 * passes on the first failure.
+	 * 
+	 * @param results
+	 *            The results of the search workers
+	 * @throws IllegalStateException
+	 *             If a worker failed with a checked exception
+	 */
+	private static void awaitAll(final List<Future<?>> results) throws IllegalStateException {
+		boolean interrupted = false;
+		Throwable failure = null;
+
+		for (final Future<?> result : results) {
+			while (true) {
+				try {
+					result.get();
+					break;
+				} catch (final InterruptedException e) {
+					interrupted = true;
+				} catch (final ExecutionException e) {
+					if (failure == null) {
+						failure = e.getCause();
+					}
+					break;
+				}
+			}
+		}
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new IllegalStateException("Search failed", failure);
+		}
+	}
+
+	/**
+	 * @param root
+	 *            The root of the tree being searched
+	 * @param elapsed
+	 *            How long the search has taken so far
+	 * @param targetMillis
+	 *            How long the search should take
+	 * @return Whether or not searching any longer is unlikely to change the most
+	 *         visited move
+	 */
+	private static boolean isSettled(final Node root, final long elapsed, final long targetMillis) {
+		if (elapsed < MIN_TARGET_FRACTION * targetMillis) {
+			return false;
+		}
+
+		int mostVisits = 0;
+		int secondMostVisits = 0;
+		for (final Node child : root.getChildren()) {
+			final int visits = child.getVisits();
+
+			if (visits > mostVisits) {
+				secondMostVisits = mostVisits;
+				mostVisits = visits;
+			} else if (visits > secondMostVisits) {
+				secondMostVisits = visits;
+			}
+		}
+
+		if (elapsed < targetMillis) {
+			// the second move can not catch up even if it got every remaining simulation
+			final double visitsPerMilli = (double) root.getVisits() / Math.max(1, elapsed);
+			return mostVisits - secondMostVisits > visitsPerMilli * (targetMillis - elapsed);
+		}
+
+		return secondMostVisits < CLOSE_FRACTION * mostVisits;
+	}
+
+	/**
+	 * @param root
+	 *            The root of a searched tree
+	 * @return The most visited next state
+	 * @throws IllegalArgumentException
+	 *             If the root has no next states
+	 */
+	private static GameState getMostVisited(final Node root) throws IllegalArgumentException {
+		Node best = null;
+		for (final Node child : root.getChildren()) {
+			if (best == null || child.getVisits() > best.getVisits()) {
+				best = child;
+			}
+		}
+
+		if (best == null) {
+			throw new IllegalArgumentException("Tried to search a state with no next states");
+		}
+
+		return best.getState();
+	}
+
+	/**
+	 * Runs a single selection, expansion, simulation and backpropagation pass.
+	 * 
+	 * @param root
+	 *            The root of the shared tree
+	 * @param searchSeed
+	 *            The seed that chance samples are derived from
+	 */
+	private static void iterate(final Node root, final long searchSeed) {
+		Node node = root;
+		node.addVirtualLoss();
+
+		// the root move this iteration goes through
+		Node rootChild = null;
+
+		// selection
+		while (node.isExpanded()) {
+			final Node[] children = node.getChildren();
+			if (children.length == 0) {
+				break;
+			}
+
+			Node best = children[0];
+			double bestUct = best.getUct(EXPLORATION_CONSTANT);
+
+			for (int i = 1; i < children.length; i++) {
+				final double uct = children[i].getUct(EXPLORATION_CONSTANT);
+				if (uct > bestUct) {
+					best = children[i];
+					bestUct = uct;
+				}
+			}
+
+			node = best;
+			node.addVirtualLoss();
+
+			if (rootChild == null) {
+				rootChild = node;
+			}
+		}
+
+		// expansion (only once a node has been visited, and only by one thread)
+		if (node.getVisits() > 0 && node.tryExpand()) {
+			final Node[] children = node.getChildren();
+
+			if (children.length > 0) {
+				node = children[ThreadLocalRandom.current().nextInt(children.length)];
+				node.addVirtualLoss();
+			}
+		}
+
+		// simulation
+		GameState simulated = node.getState();
+
+		if (varianceReduced && rootChild != null && simulated instanceof ChanceSeedable) {
+			int sample = rootChild.nextSample();
+			if (numSharedSamples > 0) {
+				sample %= 2 * numSharedSamples;
+			}
+
+			final int pair = sample / 2;
+			simulated = ((ChanceSeedable) simulated).withChanceSample(mix(searchSeed + pair), sample % 2 == 1,
+					pair % NUM_STRATA, NUM_STRATA);
+		}
+
+		if (simulated instanceof Rewardable) {
+			while (!((Rewardable) simulated).isGameOver()) {
+				simulated = simulated.getRandomNextState();
+			}
+
+			final Rewardable finished = (Rewardable) simulated;
+
+			double[] rewards = REWARDS.get();
+			if (rewards.length < finished.getNumPlayers()) {
+				rewards = new double[finished.getNumPlayers()];
+				REWARDS.set(rewards);
+			}
+
+			finished.getRewards(rewardMode, rewards);
+
+			// backpropagation
+			while (node != null) {
+				node.update(rewards[node.getState().getLastPlayer()]);
+				node = node.getParent();
+			}
+
+			return;
+		}
+
+		List<Integer> winningPlayers = simulated.getWinningPlayers();
+
+		while (winningPlayers.isEmpty()) {
+			simulated = simulated.getRandomNextState();
+			winningPlayers = simulated.getWinningPlayers();
+		}
+
+		// backpropagation
+		while (node != null) {
+			final int player = node.getState().getLastPlayer();
+			node.update(winningPlayers.contains(player) ? 1.0 / winningPlayers.size() : 0.0);
+
+			node = node.getParent();
+		}
+	}
+
+	/**
+	 * @param value
+	 *            The value to scramble
+	 * @return A well mixed seed derived from the value
+	 */
+	private static long mix(final long value) {
+		long z = value * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 32)) * 0xD6E8FEB86659FD93L;
+		return z ^ (z >>> 32);
+	}
+}
@@ -0,0 +1,168 @@
+package search;
+
+import java.util.List;
+
+import api.GameState;
+import state.Player;
+import state.SushiGoState;
+
+/**
+ * This class spreads a total time budget over every decision the AI makes in a
+ * game. Each decision is weighted by how much it is likely to matter (how many
+ * plays there are, how many cards are left to play from the hand, and how close
+ * the maki and pudding races are), and gets the share of the remaining budget
+ * that its weight makes up out of every decision left. Forced plays are made
+ * without searching. The search itself can stop early when the best move is
+ * settled, or run long when the top two moves are close, see
+ * {@link SharedTreeSearch#search(GameState, long, long, int)}.
+ * 
+ * @author Aaron Tetens
+ */
+public class TimeManager {
+
+	// a single decision may take this many times its share, but never more than
+	// this fraction of the remaining budget
+	private static final double MAX_STRETCH = 3.0;
+	private static final double MAX_SHARE_OF_REMAINING = 0.3;
+
+	private static final long MIN_MILLIS = 10;
+
+	// how much a close maki or pudding race adds to a decision's weight
+	private static final double MAKI_RACE_WEIGHT = 0.5;
+	private static final double PUDDING_RACE_WEIGHT = 1.0;
+
+	private final long totalMillis;
+	private long usedMillis;
+
+	// the weights of every decision searched so far, used to guess the weight of
+	// the decisions that are left
+	private double weightSum;
+	private int numDecisions;
+
+	/**
+	 * @param totalMillis
+	 *            The time the AI may think for over the whole game
+	 * @throws IllegalArgumentException
+	 *             If the budget is not positive
+	 */
+	public TimeManager(final long totalMillis) throws IllegalArgumentException {
+		if (totalMillis <= 0) {
+			throw new IllegalArgumentException(
+					"Tried to create a time manager with " + totalMillis + " ms (more than 0 required)");
+		}
+
+		this.totalMillis = totalMillis;
+		this.usedMillis = 0;
+
+		this.weightSum = 0.0;
+		this.numDecisions = 0;
+	}
+
+	/**
+	 * @param state
+	 *            The state to search from (the AI must not have played this trick)
+	 * @param numThreads
+	 *            The number of threads that grow the search tree
+	 * @return The next state picked by the search
+	 * @throws IllegalArgumentException
+	 *             If the given state has no next states
+	 */
+	public SushiGoState search(final SushiGoState state, final int numThreads) throws IllegalArgumentException {
+		final List<GameState> nextStates = state.getNextStates();
+
+		if (nextStates.isEmpty()) {
+			throw new IllegalArgumentException("Tried to search a state with no next states");
+		}
+
+		if (nextStates.size() == 1) {
+			return (SushiGoState) nextStates.get(0);
+		}
+
+		final double weight = getWeight(state, nextStates.size());
+		this.weightSum += weight;
+		this.numDecisions++;
+
+		// every decision after this one is guessed to weigh as much as the average so
+		// far
+		final double averageWeight = this.weightSum / this.numDecisions;
+		final int numDecisionsLeft = getNumDecisionsLeft(state) - 1;
+
+		final long remainingMillis = this.getRemainingMillis();
+		final long maxMillis = Math.max(MIN_MILLIS, (long) (MAX_SHARE_OF_REMAINING * remainingMillis));
+		final double share = weight / (weight + numDecisionsLeft * averageWeight);
+		final long targetMillis = Math.max(MIN_MILLIS, Math.min(maxMillis, (long) (share * remainingMillis)));
+
+		final long start = System.currentTimeMillis();
+		final GameState nextState = SharedTreeSearch.search(state, targetMillis,
+				Math.min(maxMillis, (long) (MAX_STRETCH * targetMillis)), numThreads);
+		this.usedMillis += System.currentTimeMillis() - start;
+
+		return (SushiGoState) nextState;
+	}
+
+	/**
+	 * @return The time left in the budget
+	 */
+	public long getRemainingMillis() {
+		return Math.max(0, this.totalMillis - this.usedMillis);
+	}
+
+	/**
+	 * @param state
+	 *            The state the AI is deciding from
+	 * @return The number of decisions the AI has left in the game, including this
+	 *         one (the last card of each round is forced)
+	 */
+	private static int getNumDecisionsLeft(final SushiGoState state) {
+		final Player[] players = state.getPlayers();
+		final int numCardsPerPlayer = 12 - players.length;
+		final int numCardsInHand = players[0].getNumCardsInHand();
+
+		return Math.max(1, numCardsInHand - 1) + (3 - state.getCurrentRound()) * (numCardsPerPlayer - 1);
+	}
+
+	/**
+	 * @param state
+	 *            The state the AI is deciding from
+	 * @param numPlays
+	 *            The number of plays the AI can make
+	 * @return How much the decision is likely to matter, relative to other
+	 *         decisions in the game
+	 */
+	static double getWeight(final SushiGoState state, final int numPlays) {
+		final Player[] players = state.getPlayers();
+		final Player ai = players[0];
+		final List<String> hand = ai.getHand();
+
+		// more plays to choose between, and more cards left to play after this one
+		double weight = Math.log(1 + numPlays) * (0.5 + (double) hand.size() / (12 - players.length));
+
+		int mostOpponentMaki = 0;
+		int mostOpponentPuddings = 0;
+		int leastOpponentPuddings = Integer.MAX_VALUE;
+		for (int i = 1; i < players.length; i++) {
+			mostOpponentMaki = Math.max(mostOpponentMaki, players[i].getNumMaki());
+			mostOpponentPuddings = Math.max(mostOpponentPuddings, players[i].getNumPuddings());
+			leastOpponentPuddings = Math.min(leastOpponentPuddings, players[i].getNumPuddings());
+		}
+
+		double race = 1.0;
+
+		// a maki race only matters if there is maki to take
+		if (hand.contains("1M") || hand.contains("2M") || hand.contains("3M")) {
+			race += MAKI_RACE_WEIGHT / (1 + Math.abs(ai.getNumMaki() - mostOpponentMaki));
+		}
+
+		// puddings are scored at the end of the game, so the race matters more in later
+		// rounds
+		if (hand.contains("P")) {
+			final int puddings = ai.getNumPuddings();
+			final double closeness = 1.0 / (1 + Math.abs(puddings - mostOpponentPuddings))
+					+ 1.0 / (1 + Math.abs(puddings - leastOpponentPuddings));
+
+			race += PUDDING_RACE_WEIGHT * closeness * state.getCurrentRound() / 3;
+		}
+
+		return weight * race;
+	}
+}
@@ -0,0 +1,84 @@
+package search;
+
+import java.util.function.Consumer;
+
+import state.SushiGoState;
+
+/**
+ * This class warms the JIT up before the first real search. It plays random
+ * self-play games (dealing, playing, scoring) and then runs short searches on
+ * random games of every size with the search the game will use, so the hot
+ * paths are compiled by the time the AI makes its first decision. It must run
+ * after every search setting is configured, so the code it compiles is the code
+ * the game runs.
+ * 
+ * Running it on its own with -XX:ArchiveClassesAtExit writes an AppCDS archive of
+ * every class the engine loads, which later runs can start from with
+ * -XX:SharedArchiveFile (see the README).
+ * 
+ * @author Aaron Tetens
+ */
+public class Warmup {
+
+	// the fraction of the warm-up spent on self-play (the rest is spent searching)
+	private static final double SELF_PLAY_FRACTION = 0.3;
+
+	private static final long SEARCH_MILLIS = 50;
+
+	/**
+	 * Usage: Warmup [millis [threads]]
+	 */
+	public static void main(final String[] args) {
+		final long millis = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+		final int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+		final int numGames = run(millis, numThreads);
+
+		System.out.println("Warmed up with " + numGames + " self-play games");
+	}
+
+	/**
+	 * Warms up the shared tree search.
+	 * 
+	 * @param millis
+	 *            How long to warm up for
+	 * @param numThreads
+	 *            The number of threads the real searches will use
+	 * @return The number of self-play games played
+	 */
+	public static int run(final long millis, final int numThreads) {
+		return run(millis, state -> SharedTreeSearch.analyze(state, SEARCH_MILLIS, numThreads));
+	}
+
+	/**
+	 * @param millis
+	 *            How long to warm up for (a search that starts before the time is
+	 *            up runs to its end)
+	 * @param search
+	 *            Runs a single short search from the given state, the same way the
+	 *            real searches do
+	 * @return The number of self-play games played
+	 */
+	public static int run(final long millis, final Consumer<SushiGoState> search) {
+		final long start = System.currentTimeMillis();
+		final long selfPlayEnd = start + (long) (SELF_PLAY_FRACTION * millis);
+		final long end = start + millis;
+
+		int numGames = 0;
+		while (System.currentTimeMillis() < selfPlayEnd) {
+			final SushiGoState state = SushiGoState.createRandomGame(2 + numGames % 4);
+
+			while (!state.isGameOver()) {
+				state.playRandomTrick();
+			}
+
+			numGames++;
+		}
+
+		for (int i = 0; System.currentTimeMillis() < end; i++) {
+			search.accept(SushiGoState.createRandomGame(2 + i % 4));
+		}
+
+		return numGames;
+	}
+}
@@ -0,0 +1,275 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import search.Warmup;
+
+/**
+ * This class hosts many games at once. Clients send one JSON object per line,
+ * either on stdin or over a local socket, and every message names the session
+ * (game) it belongs to:
+ * <ul>
+ * <li>{"session": id, "type": "new", "players": n, "hand": [cards]} (only once
+ * per session, end it to start over)</li>
+ * <li>{"session": id, "type": "move", "millis": budget} (the AI plays)</li>
+ * <li>{"session": id, "type": "play", "player": i, "cards": "2N W", "revealed":
+ * [cards], "dealt": [cards]} (revealed holds the unknown cards passed to the AI,
+ * dealt holds the AI's hand if the play ends the round)</li>
+ * <li>{"session": id, "type": "state"}</li>
+ * <li>{"session": id, "type": "end"}</li>
+ * </ul>
+ * Each session runs on its own (virtual, if available) thread, and all searches
+ * share one fixed pool of CPU threads. A session belongs to the connection that
+ * created it: other connections can not send it messages, and it ends when that
+ * connection closes.
+ * 
+ * @author Aaron Tetens
+ */
+public class EngineServer {
+
+	private final Map<String, GameSession> sessions;
+	private final ExecutorService sessionThreads;
+	private final SearchPool searchPool;
+
+	private final int maxSessions;
+	private final long latencyMillis;
+
+	/**
+	 * @param numWorkers
+	 *            The number of searches that run at once
+	 * @param maxSessions
+	 *            The number of games that can be hosted at once
+	 * @param latencyMillis
+	 *            The time each AI move should be replied to within
+	 */
+	public EngineServer(final int numWorkers, final int maxSessions, final long latencyMillis) {
+		this.sessions = new ConcurrentHashMap<>();
+		this.sessionThreads = newSessionThreads();
+		this.searchPool = new SearchPool(numWorkers, 2 * numWorkers);
+
+		this.maxSessions = maxSessions;
+		this.latencyMillis = latencyMillis;
+	}
+
+	/**
+	 * Usage: EngineServer [-port n] [-workers n] [-sessions n] [-latency millis]
+	 * [-warmup millis]
+	 */
+	public static void main(final String[] args) throws IOException {
+		int port = -1;
+		int numWorkers = Runtime.getRuntime().availableProcessors();
+		int maxSessions = 1000;
+		long latencyMillis = 5000;
+		long warmupMillis = 0;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-port")) {
+				port = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-workers")) {
+				numWorkers = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-sessions")) {
+				maxSessions = Integer.parseInt(args[i + 1]);
+			} else if (args[i].equals("-latency")) {
+				latencyMillis = Long.parseLong(args[i + 1]);
+			} else if (args[i].equals("-warmup")) {
+				warmupMillis = Long.parseLong(args[i + 1]);
+			} else {
+				System.out.println("Unknown option " + args[i]);
+				return;
+			}
+		}
+
+		// each search runs on a single worker thread
+		if (warmupMillis > 0) {
+			Warmup.run(warmupMillis, 1);
+		}
+
+		final EngineServer server = new EngineServer(numWorkers, maxSessions, latencyMillis);
+
+		if (port < 0) {
+			// keep anything the engine prints off of the protocol stream
+			final PrintStream protocol = System.out;
+			System.setOut(System.err);
+
+			server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)),
+					line -> protocol.println(line));
+		} else {
+			try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+				while (true) {
+					final Socket socket = serverSocket.accept();
+					server.sessionThreads.execute(() -> server.serve(socket));
+				}
+			}
+		}
+
+		server.shutdown();
+	}
+
+	/**
+	 * @param socket
+	 *            The client connection to serve
+	 */
+	private void serve(final Socket socket) {
+		try (Socket client = socket;
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+				PrintWriter writer = new PrintWriter(client.getOutputStream(), true)) {
+
+			this.serve(reader, writer::println);
+		} catch (final IOException e) {
+			// the client went away, serve has already ended its sessions
+		}
+	}
+
+	/**
+	 * Reads messages until the input ends, handing each one to its session. Every
+	 * session created from this input is ended once the input ends.
+	 * 
+	 * @param reader
+	 *            Where to read messages from
+	 * @param output
+	 *            Where to send replies
+	 */
+	public void serve(final BufferedReader reader, final Consumer<String> output) {
+		final Consumer<String> synchronizedOutput = line -> {
+			synchronized (output) {
+				output.accept(line);
+			}
+		};
+
+		// the ids of the sessions this input created (only touched by this thread)
+		final Set<String> ownedIds = new HashSet<>();
+
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!line.trim().isEmpty()) {
+					this.dispatch(line, synchronizedOutput, ownedIds);
+				}
+			}
+		} catch (final IOException e) {
+			// treat a broken input like the end of the input
+		} finally {
+			final Map<String, Object> end = Json.parse("{\"type\": \"end\"}");
+
+			for (final String id : ownedIds) {
+				final GameSession session = this.sessions.get(id);
+
+				if (session != null && session.getOwner() == ownedIds) {
+					session.send(end);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param line
+	 *            A single message
+	 * @param output
+	 *            Where to send replies
+	 * @param ownedIds
+	 *            The ids of the sessions created by the input the message came
+	 *            from (also identifies that input)
+	 */
+	private void dispatch(final String line, final Consumer<String> output, final Set<String> ownedIds) {
+		final Map<String, Object> message;
+		try {
+			message = Json.parse(line);
+		} catch (final IllegalArgumentException e) {
+			output.accept(Json.format("type", "error", "message", e.getMessage()));
+			return;
+		}
+
+		final String id = String.valueOf(message.get("session"));
+		GameSession session = this.sessions.get(id);
+
+		if (session == null && "new".equals(message.get("type"))) {
+			// admission control: refuse new games rather than slow down every game
+			if (this.sessions.size() >= this.maxSessions) {
+				output.accept(Json.format("session", id, "type", "busy"));
+				return;
+			}
+
+			session = new GameSession(id, ownedIds, output, this.searchPool, this.latencyMillis,
+					ended -> this.sessions.remove(id, ended));
+
+			// another input may have created the same id since the lookup above
+			if (this.sessions.putIfAbsent(id, session) != null) {
+				output.accept(Json.format("session", id, "type", "error", "message",
+						"Session belongs to another connection"));
+				return;
+			}
+
+			ownedIds.add(id);
+			this.sessionThreads.execute(session);
+		}
+
+		if (session == null) {
+			output.accept(Json.format("session", id, "type", "error", "message", "Unknown session"));
+			return;
+		}
+
+		if (session.getOwner() != ownedIds) {
+			output.accept(Json.format("session", id, "type", "error", "message",
+					"Session belongs to another connection"));
+			return;
+		}
+
+		session.send(message);
+
+		// the session finishes its earlier messages on its own, but the id is free for
+		// a new game right away (messages sent after end would otherwise be dropped)
+		if ("end".equals(message.get("type"))) {
+			this.sessions.remove(id, session);
+		}
+	}
+
+	/**
+	 * Ends every session once it has handled the messages it already received.
+	 */
+	public void shutdown() {
+		final Map<String, Object> end = Json.parse("{\"type\": \"end\"}");
+		for (final GameSession session : this.sessions.values()) {
+			session.send(end);
+		}
+
+		this.sessionThreads.shutdown();
+
+		try {
+			this.sessionThreads.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		this.searchPool.shutdown();
+	}
+
+	/**
+	 * @return An executor that gives every task its own virtual thread (Java 21
+	 *         and later), or a cached pool of platform threads on older versions
+	 */
+	private static ExecutorService newSessionThreads() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (final ReflectiveOperationException e) {
+			// sessions mostly wait on their inbox, so platform threads also work
+			return Executors.newCachedThreadPool();
+		}
+	}
+}
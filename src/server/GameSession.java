@@ -0,0 +1,301 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import search.MoveStatistics;
+import state.Player;
+import state.Positions;
+import state.SushiGoState;
+
+/**
+ * This class is a single game hosted by the server. It handles its messages one
+ * at a time on its own thread, driving the game through the same deal, play and
+ * rotate events as the console game.
+ * 
+ * @author Aaron Tetens
+ */
+class GameSession implements Runnable {
+
+	private final String id;
+	private final Object owner;
+	private final BlockingQueue<Map<String, Object>> inbox;
+	private final Consumer<String> output;
+	private final SearchPool searchPool;
+	private final long latencyMillis;
+	private final Consumer<GameSession> onEnd;
+
+	private SushiGoState state;
+
+	/**
+	 * @param id
+	 *            The id the client uses for this session
+	 * @param owner
+	 *            Identifies the connection that created this session
+	 * @param output
+	 *            Where to send replies
+	 * @param searchPool
+	 *            The pool that runs this session's searches
+	 * @param latencyMillis
+	 *            The time each AI move should be replied to within
+	 * @param onEnd
+	 *            Called with this session once it is over
+	 */
+	GameSession(final String id, final Object owner, final Consumer<String> output, final SearchPool searchPool,
+			final long latencyMillis, final Consumer<GameSession> onEnd) {
+
+		this.id = id;
+		this.owner = owner;
+		this.inbox = new LinkedBlockingQueue<>();
+		this.output = output;
+		this.searchPool = searchPool;
+		this.latencyMillis = latencyMillis;
+		this.onEnd = onEnd;
+
+		this.state = null;
+	}
+
+	/**
+	 * @return The object identifying the connection that created this session
+	 */
+	Object getOwner() {
+		return this.owner;
+	}
+
+	/**
+	 * @param message
+	 *            A message for this session
+	 */
+	void send(final Map<String, Object> message) {
+		this.inbox.add(message);
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				final Map<String, Object> message = this.inbox.take();
+				final String type = String.valueOf(message.get("type"));
+
+				if (type.equals("end")) {
+					this.reply("type", "end");
+					return;
+				}
+
+				try {
+					this.handle(type, message);
+				} catch (final IllegalArgumentException | IllegalStateException | ClassCastException e) {
+					this.reply("type", "error", "message", String.valueOf(e.getMessage()));
+				}
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			this.onEnd.accept(this);
+		}
+	}
+
+	/**
+	 * @param type
+	 *            The type of the message
+	 * @param message
+	 *            The message
+	 * @throws IllegalArgumentException
+	 *             If the message is not valid for the current game
+	 * @throws InterruptedException
+	 *             If the session was interrupted while searching
+	 */
+	private void handle(final String type, final Map<String, Object> message)
+			throws IllegalArgumentException, InterruptedException {
+
+		if (type.equals("new")) {
+			if (this.state != null) {
+				throw new IllegalStateException("The game has already been started (send end to start over)");
+			}
+
+			final int numPlayers = getInt(message, "players");
+			this.state = new SushiGoState(numPlayers,
+					new SessionCardInput(getStrings(message, "hand"), new ArrayList<>()), null);
+
+			this.reply("type", "ok", "round", this.state.getCurrentRound());
+			return;
+		}
+
+		if (this.state == null) {
+			throw new IllegalStateException("The game has not been started (send a new message first)");
+		}
+
+		switch (type) {
+		case "move":
+			this.move(message.containsKey("millis") ? getInt(message, "millis") : this.latencyMillis);
+			break;
+		case "play":
+			final int player = getInt(message, "player");
+			this.checkCanPlay(player);
+
+			final SushiGoState next = this.state.copy();
+			next.playCards(player, String.valueOf(message.get("cards")).toUpperCase(),
+					new SessionCardInput(getStrings(message, "dealt"), getStrings(message, "revealed")));
+
+			this.state = next;
+			this.reply("type", "ok", "round", this.state.getCurrentRound(), "winners",
+					this.state.getWinningPlayers());
+			break;
+		case "state":
+			this.reply("type", "state", "position", Positions.format(this.state));
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown message type " + type);
+		}
+	}
+
+	/**
+	 * Searches for the AI's move, plays it, and replies with it.
+	 * 
+	 * @param millis
+	 *            The requested search time
+	 * @throws IllegalStateException
+	 *             If the AI has already played this trick or has nothing to play
+	 * @throws InterruptedException
+	 *             If the session was interrupted while searching
+	 */
+	private void move(final long millis) throws IllegalStateException, InterruptedException {
+		if (this.hasAiPlayed()) {
+			throw new IllegalStateException("The AI has already played this trick");
+		}
+
+		// refused before reaching the pool, so a finished game never holds a worker
+		// for its whole budget
+		if (this.state.isGameOver()) {
+			throw new IllegalStateException("The game is over");
+		}
+
+		if (this.state.getLegalPlays(0).isEmpty()) {
+			throw new IllegalStateException("The AI has no cards to play");
+		}
+
+		final List<MoveStatistics> moves;
+
+		try {
+			moves = this.searchPool.search(this.state, millis, this.latencyMillis);
+		} catch (final RejectedExecutionException e) {
+			this.reply("type", "busy");
+			return;
+		} catch (final ExecutionException e) {
+			throw new IllegalStateException("Search failed: " + e.getCause());
+		}
+
+		if (moves.isEmpty()) {
+			throw new IllegalStateException("The search found no move for the AI");
+		}
+
+		final MoveStatistics best = moves.get(0);
+		this.state = (SushiGoState) best.getState();
+
+		this.reply("type", "move", "play", this.state.getLastAiPlay(), "visits", best.getVisits(), "value",
+				best.getMeanValue());
+	}
+
+	/**
+	 * The hands are passed on as soon as no opponent holds more cards than the AI,
+	 * so every trick has to go in order: the AI's move first, then each opponent
+	 * once.
+	 * 
+	 * @param player
+	 *            The index of the opponent that is playing
+	 * @throws IllegalArgumentException
+	 *             If the player is not an opponent
+	 * @throws IllegalStateException
+	 *             If the AI has not played this trick or the player already has
+	 */
+	private void checkCanPlay(final int player) throws IllegalArgumentException, IllegalStateException {
+		final Player[] players = this.state.getPlayers();
+
+		if (player < 1 || player >= players.length) {
+			throw new IllegalArgumentException(
+					"Tried to play for player " + player + " (1-" + (players.length - 1) + " required)");
+		}
+
+		if (!this.hasAiPlayed()) {
+			throw new IllegalStateException("The AI has not played this trick (send a move message first)");
+		}
+
+		if (players[player].getNumCardsInHand() <= players[0].getNumCardsInHand()) {
+			throw new IllegalStateException("Player " + player + " has already played this trick");
+		}
+	}
+
+	/**
+	 * @return Whether or not the AI has played this trick (some opponent still
+	 *         holds more cards than the AI)
+	 */
+	private boolean hasAiPlayed() {
+		final Player[] players = this.state.getPlayers();
+
+		for (int i = 1; i < players.length; i++) {
+			if (players[i].getNumCardsInHand() > players[0].getNumCardsInHand()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param fields
+	 *            Alternating keys and values of the reply (the session id is
+	 *            added)
+	 */
+	private void reply(final Object... fields) {
+		final Object[] withId = new Object[fields.length + 2];
+		withId[0] = "session";
+		withId[1] = this.id;
+		System.arraycopy(fields, 0, withId, 2, fields.length);
+
+		this.output.accept(Json.format(withId));
+	}
+
+	/**
+	 * @param message
+	 *            The message
+	 * @param key
+	 *            The key of a number field
+	 * @return The value of the field
+	 * @throws IllegalArgumentException
+	 *             If the field is missing or not a number
+	 */
+	private static int getInt(final Map<String, Object> message, final String key) throws IllegalArgumentException {
+		final Object value = message.get(key);
+		if (!(value instanceof Double)) {
+			throw new IllegalArgumentException("Expected a number for " + key);
+		}
+
+		return ((Double) value).intValue();
+	}
+
+	/**
+	 * @param message
+	 *            The message
+	 * @param key
+	 *            The key of an array field
+	 * @return The values of the field as strings (empty if the field is missing)
+	 */
+	private static List<String> getStrings(final Map<String, Object> message, final String key) {
+		final List<String> strings = new ArrayList<>();
+
+		final Object value = message.get(key);
+		if (value instanceof List) {
+			for (final Object element : (List<?>) value) {
+				strings.add(String.valueOf(element));
+			}
+		}
+
+		return strings;
+	}
+}
@@ -0,0 +1,199 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class reads and writes the small, flat JSON objects used by the server
+ * protocol. Values can be strings, numbers, booleans, null, or arrays of those.
+ * 
+ * @author Aaron Tetens
+ */
+class Json {
+
+	private final String text;
+	private int position;
+
+	private Json(final String text) {
+		this.text = text;
+		this.position = 0;
+	}
+
+	/**
+	 * @param text
+	 *            A single JSON object
+	 * @return The fields of the object (numbers are Doubles, arrays are Lists)
+	 * @throws IllegalArgumentException
+	 *             If the text is not a flat JSON object
+	 */
+	static Map<String, Object> parse(final String text) throws IllegalArgumentException {
+		final Json json = new Json(text);
+		final Map<String, Object> object = new LinkedHashMap<>();
+
+		json.expect('{');
+		if (json.peek() == '}') {
+			json.position++;
+			return object;
+		}
+
+		do {
+			final String key = json.readString();
+			json.expect(':');
+			object.put(key, json.readValue());
+		} while (json.tryConsume(','));
+
+		json.expect('}');
+		return object;
+	}
+
+	/**
+	 * @param fields
+	 *            Alternating keys and values (Strings, Numbers, Booleans or
+	 *            Lists)
+	 * @return The JSON object with the given fields
+	 */
+	static String format(final Object... fields) {
+		final StringBuilder sb = new StringBuilder("{");
+
+		for (int i = 0; i + 1 < fields.length; i += 2) {
+			sb.append(i == 0 ? "" : ",");
+			appendValue(sb, fields[i]);
+			sb.append(':');
+			appendValue(sb, fields[i + 1]);
+		}
+
+		return sb.append('}').toString();
+	}
+
+	private static void appendValue(final StringBuilder sb, final Object value) {
+		if (value instanceof String) {
+			sb.append('"');
+
+			for (final char c : ((String) value).toCharArray()) {
+				if (c == '"' || c == '\\') {
+					sb.append('\\').append(c);
+				} else if (c < ' ') {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+
+			sb.append('"');
+		} else if (value instanceof List) {
+			sb.append('[');
+
+			final List<?> list = (List<?>) value;
+			for (int i = 0; i < list.size(); i++) {
+				sb.append(i == 0 ? "" : ",");
+				appendValue(sb, list.get(i));
+			}
+
+			sb.append(']');
+		} else {
+			sb.append(value);
+		}
+	}
+
+	private Object readValue() {
+		final char c = this.peek();
+
+		if (c == '"') {
+			return this.readString();
+		} else if (c == '[') {
+			this.position++;
+
+			final List<Object> list = new ArrayList<>();
+			if (this.tryConsume(']')) {
+				return list;
+			}
+
+			do {
+				list.add(this.readValue());
+			} while (this.tryConsume(','));
+
+			this.expect(']');
+			return list;
+		} else if (this.text.startsWith("true", this.position)) {
+			this.position += 4;
+			return true;
+		} else if (this.text.startsWith("false", this.position)) {
+			this.position += 5;
+			return false;
+		} else if (this.text.startsWith("null", this.position)) {
+			this.position += 4;
+			return null;
+		}
+
+		final int start = this.position;
+		while (this.position < this.text.length() && "+-.eE0123456789".indexOf(this.text.charAt(this.position)) >= 0) {
+			this.position++;
+		}
+
+		try {
+			return Double.parseDouble(this.text.substring(start, this.position));
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("Unexpected JSON value at " + start);
+		}
+	}
+
+	private String readString() {
+		this.expect('"');
+
+		final StringBuilder sb = new StringBuilder();
+
+		while (this.position < this.text.length()) {
+			final char c = this.text.charAt(this.position++);
+
+			if (c == '"') {
+				return sb.toString();
+			} else if (c != '\\') {
+				sb.append(c);
+			} else if (this.position < this.text.length()) {
+				final char escaped = this.text.charAt(this.position++);
+
+				if (escaped == 'u' && this.position + 4 <= this.text.length()) {
+					sb.append((char) Integer.parseInt(this.text.substring(this.position, this.position + 4), 16));
+					this.position += 4;
+				} else if (escaped == 'n') {
+					sb.append('\n');
+				} else if (escaped == 't') {
+					sb.append('\t');
+				} else {
+					sb.append(escaped);
+				}
+			}
+		}
+
+		throw new IllegalArgumentException("Unterminated JSON string");
+	}
+
+	private char peek() {
+		while (this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))) {
+			this.position++;
+		}
+
+		if (this.position >= this.text.length()) {
+			throw new IllegalArgumentException("Unexpected end of JSON");
+		}
+
+		return this.text.charAt(this.position);
+	}
+
+	private boolean tryConsume(final char c) {
+		if (this.peek() == c) {
+			this.position++;
+			return true;
+		}
+
+		return false;
+	}
+
+	private void expect(final char c) {
+		if (!this.tryConsume(c)) {
+			throw new IllegalArgumentException("Expected '" + c + "' at " + this.position);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package server;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import search.MoveStatistics;
+import search.SharedTreeSearch;
+import state.SushiGoState;
+
+/**
+ * This class is the fixed pool of CPU threads that every session's searches
+ * share. Searches run first come first served, and since a session waits for its
+ * search before it can ask for another, a heavy game can never hold more than
+ * one place in line. The queue is bounded so the server refuses work it cannot
+ * finish in time instead of falling behind.
+ * 
+ * @author Aaron Tetens
+ */
+class SearchPool {
+
+	// searches always get at least this long, even if they waited in line
+	private static final long MIN_SEARCH_MILLIS = 10;
+
+	private final ThreadPoolExecutor workers;
+
+	/**
+	 * @param numWorkers
+	 *            The number of searches that run at once
+	 * @param maxQueued
+	 *            The number of searches that can wait for a worker
+	 */
+	SearchPool(final int numWorkers, final int maxQueued) {
+		this.workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(maxQueued));
+	}
+
+	/**
+	 * Searches the given state, giving up some of the budget if the search had to
+	 * wait for a worker so that the reply still arrives within the latency target.
+	 * 
+	 * @param state
+	 *            The state to search
+	 * @param millis
+	 *            The requested search time
+	 * @param latencyMillis
+	 *            The time the reply should arrive within
+	 * @return The statistics of every move, most visited first
+	 * @throws RejectedExecutionException
+	 *             If too many searches are already waiting
+	 * @throws InterruptedException
+	 *             If the calling session was interrupted while waiting
+	 * @throws ExecutionException
+	 *             If the search failed
+	 */
+	List<MoveStatistics> search(final SushiGoState state, final long millis, final long latencyMillis)
+			throws RejectedExecutionException, InterruptedException, ExecutionException {
+
+		final long submitted = System.currentTimeMillis();
+
+		final Future<List<MoveStatistics>> result = this.workers.submit(() -> {
+			final long waited = System.currentTimeMillis() - submitted;
+			final long budget = Math.max(MIN_SEARCH_MILLIS, Math.min(millis, latencyMillis - waited));
+
+			return SharedTreeSearch.analyze(state, budget, 1);
+		});
+
+		return result.get();
+	}
+
+	void shutdown() {
+		this.workers.shutdownNow();
+	}
+}
@@ -0,0 +1,64 @@
+package server;
+
+import java.util.List;
+
+import state.CardInput;
+
+/**
+ * This class supplies the cards sent along with a server message: the AI's
+ * dealt hand and the unknown cards it was passed. Every other player's dealt
+ * cards are unknown.
+ * 
+ * @author Aaron Tetens
+ */
+class SessionCardInput implements CardInput {
+
+	private final List<String> dealt;
+	private final List<String> revealed;
+
+	private int numRevealed;
+	private int lastCardNumber;
+
+	/**
+	 * @param dealt
+	 *            The cards dealt to the AI (may be empty)
+	 * @param revealed
+	 *            The unknown cards passed to the AI, in order (may be empty)
+	 */
+	SessionCardInput(final List<String> dealt, final List<String> revealed) {
+		this.dealt = dealt;
+		this.revealed = revealed;
+
+		this.numRevealed = 0;
+		this.lastCardNumber = 0;
+	}
+
+	@Override
+	public String readDealtCard(final int player, final int cardNumber) {
+		if (player != 0) {
+			return "?";
+		}
+
+		// the game only asks for the same card again if the sent one was invalid
+		if (cardNumber == this.lastCardNumber) {
+			throw new IllegalArgumentException("Dealt card " + cardNumber + " is not in the deck");
+		}
+
+		if (cardNumber > this.dealt.size()) {
+			throw new IllegalArgumentException("The AI was dealt " + this.dealt.size() + " cards (more required)");
+		}
+
+		this.lastCardNumber = cardNumber;
+		return this.dealt.get(cardNumber - 1).toUpperCase();
+	}
+
+	@Override
+	public String readRevealedCard() {
+		if (this.numRevealed >= this.revealed.size()) {
+			throw new IllegalArgumentException(
+					"Only " + this.revealed.size() + " revealed cards were sent (more required)");
+		}
+
+		return this.revealed.get(this.numRevealed++).toUpperCase();
+	}
+}
@@ -0,0 +1,25 @@
+package state;
+
+/**
+ * This interface supplies the cards that the AI learns about during a real game
+ * (the cards it is dealt, and the unknown cards it is passed).
+ * 
+ * @author Aaron Tetens
+ */
+public interface CardInput {
+
+	/**
+	 * @param player
+	 *            The index of the player being dealt the card
+	 * @param cardNumber
+	 *            Which card of the deal this is (starting at 1)
+	 * @return The dealt card, or "?" if it is unknown (the AI's cards are always
+	 *         known)
+	 */
+	String readDealtCard(int player, int cardNumber);
+
+	/**
+	 * @return A card that was unknown until its hand was passed to the AI
+	 */
+	String readRevealedCard();
+}
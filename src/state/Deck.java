@@ -2,6 +2,7 @@ package state;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * This class stores the current state of the deck.
@@ -10,6 +11,9 @@ import java.util.Map;
  */
 class Deck {
 
+	// every card type, in a fixed order (shared by the classes that index cards)
+	static final String[] CARDS = { "T", "S", "D", "2M", "3M", "1M", "2N", "3N", "1N", "P", "W", "C" };
+
 	// it is very important to remove entries whose value is zero
 	private final Map<String, Integer> cards;
 
@@ -33,6 +37,27 @@ class Deck {
 		this.cards = new HashMap<>(deck.cards);
 	}
 
+	/**
+	 * @param cards
+	 *            The number of each card left in the deck
+	 */
+	Deck(final Map<String, Integer> cards) {
+		this.cards = new HashMap<>();
+
+		for (final Map.Entry<String, Integer> entry : cards.entrySet()) {
+			if (entry.getValue() > 0) {
+				this.cards.put(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * @return The number of each card left in the deck
+	 */
+	Map<String, Integer> getCards() {
+		return this.cards;
+	}
+
 	/**
 	 * This method removes a card from the deck at random and returns the removed
 	 * card.
@@ -40,21 +65,34 @@ class Deck {
 	 * @return The randomly drawn card
 	 */
 	String drawRandomCard() {
+		return this.drawRandomCard(ThreadLocalRandom.current().nextDouble());
+	}
+
+	/**
+	 * This method removes a card from the deck and returns the removed card. The
+	 * cards are always laid out in the same order, so the same random value always
+	 * picks the same card from the same deck.
+	 * 
+	 * @param random
+	 *            A random value in [0, 1)
+	 * @return The drawn card
+	 */
+	String drawRandomCard(final double random) {
 		int numCards = 0;
 		for (final Integer count : this.cards.values()) {
 			numCards += count;
 		}
 
-		final int chosen = ((int) (Math.random() * numCards)) + 1;
+		final int chosen = Math.min(numCards - 1, (int) (random * numCards)) + 1;
 		int current = 0;
-		String card = null;
 
-		for (final Map.Entry<String, Integer> entry : this.cards.entrySet()) {
-			final String entryCard = entry.getKey();
-			final Integer entryCount = entry.getValue();
+		for (final String card : CARDS) {
+			final Integer count = this.cards.get(card);
+			if (count == null) {
+				continue;
+			}
 
-			card = entryCard;
-			current += entryCount;
+			current += count;
 
 			if (current >= chosen) {
 				this.drawCard(card);
@@ -0,0 +1,34 @@
+package state;
+
+import java.util.List;
+
+/**
+ * This interface is notified of everything that happens in a game, in the order
+ * it happens (used to record games).
+ * 
+ * @author Aaron Tetens
+ */
+public interface GameObserver {
+
+	/**
+	 * @param player
+	 *            The index of the player that was dealt a new hand
+	 * @param hand
+	 *            The dealt hand ("?" for unknown cards)
+	 */
+	void onDeal(int player, List<String> hand);
+
+	/**
+	 * @param player
+	 *            The index of the player that played
+	 * @param cards
+	 *            The cards that were played, separated by a space
+	 */
+	void onPlay(int player, String cards);
+
+	/**
+	 * @param card
+	 *            A card that was unknown until its hand was passed to the AI
+	 */
+	void onReveal(String card);
+}
@@ -0,0 +1,156 @@
+package state;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class lists every distinct play that can be made from a hand. The plays
+ * only depend on how many of each card the hand has and whether or not the
+ * player has chopsticks, so they are built from the count of each card type
+ * instead of from every pair of cards in the hand. It is only used where every
+ * play is listed (expanding the root of a search, the time manager and the
+ * harness), since rollouts pick their random plays straight from the hand.
+ * 
+ * @author Aaron Tetens
+ */
+final class MoveTable {
+
+	// 4 bits per type, unknown cards ("?") are the last type and chopsticks in the
+	// field is the bit above every type
+	private static final int BITS_PER_TYPE = 4;
+	private static final int UNKNOWN = Deck.CARDS.length;
+	private static final int NUM_TYPES = UNKNOWN + 1;
+	private static final long CHOPSTICKS = 1L << (NUM_TYPES * BITS_PER_TYPE);
+
+	// every distinct play (one card plays first, then two card plays)
+	private final List<String> plays;
+
+	/**
+	 * @param signature
+	 *            The signature of the hand, see getSignature
+	 */
+	private MoveTable(final long signature) {
+		final int[] counts = new int[NUM_TYPES];
+		for (int type = 0; type < NUM_TYPES; type++) {
+			counts[type] = (int) ((signature >>> (type * BITS_PER_TYPE)) & 0xF);
+		}
+
+		final boolean hasChopsticks = (signature & CHOPSTICKS) != 0;
+
+		final String[] plays = new String[NUM_TYPES + (hasChopsticks ? NUM_TYPES * NUM_TYPES : 0)];
+		int numPlays = 0;
+
+		// one card plays
+		for (int type = 0; type < NUM_TYPES; type++) {
+			if (counts[type] > 0) {
+				plays[numPlays++] = getCard(type);
+			}
+		}
+
+		// two card plays
+		// the ordering of the cards matters because of wasabi/nigiri orderings
+		if (hasChopsticks) {
+			for (int first = 0; first < NUM_TYPES; first++) {
+				for (int second = 0; second < NUM_TYPES; second++) {
+					if (counts[first] > 0 && counts[second] > (first == second ? 1 : 0)) {
+						plays[numPlays++] = getCard(first) + " " + getCard(second);
+					}
+				}
+			}
+		}
+
+		this.plays = Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(plays, numPlays)));
+	}
+
+	/**
+	 * @param hand
+	 *            The cards in the hand
+	 * @param hasChopsticks
+	 *            Whether or not the player has chopsticks in their field
+	 * @return The table of plays for the hand
+	 */
+	static MoveTable get(final List<String> hand, final boolean hasChopsticks) {
+		return new MoveTable(getSignature(hand, hasChopsticks));
+	}
+
+	/**
+	 * @return Every distinct play (unmodifiable)
+	 */
+	List<String> getPlays() {
+		return this.plays;
+	}
+
+	/**
+	 * @param hand
+	 *            The cards in the hand
+	 * @param hasChopsticks
+	 *            Whether or not the player has chopsticks in their field
+	 * @return The number of each card in the hand packed into 4 bits each, with the
+	 *         chopsticks flag above them
+	 * @throws IllegalArgumentException
+	 *             If the hand holds an invalid card
+	 */
+	private static long getSignature(final List<String> hand, final boolean hasChopsticks)
+			throws IllegalArgumentException {
+		long signature = hasChopsticks ? CHOPSTICKS : 0;
+
+		for (int i = 0; i < hand.size(); i++) {
+			signature += 1L << (getType(hand.get(i)) * BITS_PER_TYPE);
+		}
+
+		return signature;
+	}
+
+	/**
+	 * @param card
+	 *            The card
+	 * @return The index of the card's type (the order of Deck.CARDS, then "?")
+	 * @throws IllegalArgumentException
+	 *             If the card is not valid
+	 */
+	private static int getType(final String card) throws IllegalArgumentException {
+		if (card.length() == 1) {
+			switch (card.charAt(0)) {
+			case 'T':
+				return 0;
+			case 'S':
+				return 1;
+			case 'D':
+				return 2;
+			case 'P':
+				return 9;
+			case 'W':
+				return 10;
+			case 'C':
+				return 11;
+			case '?':
+				return UNKNOWN;
+			}
+		} else if (card.length() == 2) {
+			final char value = card.charAt(0);
+
+			if (value >= '1' && value <= '3') {
+				// 2, 3 and 1 follow each other in Deck.CARDS
+				final int offset = value == '1' ? 2 : value - '2';
+
+				if (card.charAt(1) == 'M') {
+					return 3 + offset;
+				} else if (card.charAt(1) == 'N') {
+					return 6 + offset;
+				}
+			}
+		}
+
+		throw new IllegalArgumentException("Tried to generate plays for " + card + " (not a card)");
+	}
+
+	/**
+	 * @param type
+	 *            The index of the card type
+	 * @return The card
+	 */
+	private static String getCard(final int type) {
+		return type == UNKNOWN ? "?" : Deck.CARDS[type];
+	}
+}
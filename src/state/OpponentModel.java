@@ -0,0 +1,202 @@
+package state;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class learns how each opponent picks cards from the hands they are
+ * offered. Every card type has a preference weight for each player, plus a
+ * second weight that applies when the card adds to a set the player has already
+ * started (sashimi, tempura, dumplings, or nigiri on an unused wasabi). A card's
+ * chance of being played is proportional to exp(preference), over every card in
+ * the hand, so a model that has seen nothing plays uniformly at random.
+ * 
+ * The weights are only updated by plays observed in the real game, which happen
+ * between searches, so rollouts can read them without locking.
+ * 
+ * @author Aaron Tetens
+ */
+class OpponentModel {
+
+	// how far each observed play moves the weights
+	private static final double LEARNING_RATE = 0.3;
+
+	// preferences are kept in this range so that no card is ever ruled out
+	private static final double MAX_WEIGHT = 4.0;
+
+	private static final Map<String, Integer> TYPES = new HashMap<>();
+	static {
+		for (int i = 0; i < Deck.CARDS.length; i++) {
+			TYPES.put(Deck.CARDS[i], i);
+		}
+	}
+
+	// the preference for each card type, indexed by player then type
+	private final double[][] preferences;
+
+	// the extra preference for each card type when it adds to a started set
+	private final double[][] setPreferences;
+
+	/**
+	 * @param numPlayers
+	 *            The number of players in the game
+	 */
+	OpponentModel(final int numPlayers) {
+		this.preferences = new double[numPlayers][TYPES.size()];
+		this.setPreferences = new double[numPlayers][TYPES.size()];
+	}
+
+	/**
+	 * This method should be called before the card is moved from the hand to the
+	 * field.
+	 * 
+	 * @param player
+	 *            The index of the player that played
+	 * @param hand
+	 *            The hand the card was picked from ("?" for unknown cards)
+	 * @param field
+	 *            The player's field
+	 * @param card
+	 *            The card that was played
+	 */
+	void observe(final int player, final List<String> hand, final List<String> field, final String card) {
+		final Integer played = TYPES.get(card);
+		if (played == null) {
+			return;
+		}
+
+		// unknown cards are left out, except for the one that turned out to be the
+		// played card
+		double total = 0.0;
+		boolean playedKnown = false;
+		final double[] probabilities = new double[TYPES.size()];
+
+		for (final String offered : hand) {
+			final Integer type = TYPES.get(offered);
+			if (type == null) {
+				continue;
+			}
+
+			final double weight = this.getWeight(player, offered, field);
+			probabilities[type] += weight;
+			total += weight;
+			playedKnown |= type.equals(played);
+		}
+
+		if (!playedKnown) {
+			final double weight = this.getWeight(player, card, field);
+			probabilities[played] += weight;
+			total += weight;
+		}
+
+		// one gradient step on the log likelihood of the observed play
+		for (int type = 0; type < probabilities.length; type++) {
+			if (probabilities[type] == 0.0) {
+				continue;
+			}
+
+			final double error = (type == played ? 1.0 : 0.0) - probabilities[type] / total;
+
+			this.preferences[player][type] = clamp(this.preferences[player][type] + LEARNING_RATE * error);
+			if (addsToSet(type, field)) {
+				this.setPreferences[player][type] = clamp(this.setPreferences[player][type] + LEARNING_RATE * error);
+			}
+		}
+	}
+
+	/**
+	 * @param player
+	 *            The index of the player
+	 * @param card
+	 *            A card in the player's hand
+	 * @param field
+	 *            The player's field
+	 * @return How likely the player is to play the card, relative to the other
+	 *         cards in their hand
+	 */
+	double getWeight(final int player, final String card, final List<String> field) {
+		final Integer type = TYPES.get(card);
+		if (type == null) {
+			return 1.0;
+		}
+
+		double preference = this.preferences[player][type];
+		if (addsToSet(type, field)) {
+			preference += this.setPreferences[player][type];
+		}
+
+		return Math.exp(preference);
+	}
+
+	/**
+	 * @param type
+	 *            The index of the card type
+	 * @param field
+	 *            The player's field
+	 * @return Whether or not a card of this type adds to a set the player has
+	 *         already started
+	 */
+	private static boolean addsToSet(final int type, final List<String> field) {
+		switch (type) {
+		case 0:
+			return count(field, "T") % 2 == 1;
+		case 1:
+			return count(field, "S") % 3 != 0;
+		case 2:
+			final int numDumplings = count(field, "D");
+			return numDumplings > 0 && numDumplings < 5;
+		case 6:
+		case 7:
+		case 8:
+			return hasUnusedWasabi(field);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @param field
+	 *            The player's field
+	 * @param card
+	 *            The card to count
+	 * @return The number of copies of the card in the field
+	 */
+	private static int count(final List<String> field, final String card) {
+		int count = 0;
+		for (final String fieldCard : field) {
+			if (fieldCard.equals(card)) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * @param field
+	 *            The player's field, in the order it was played
+	 * @return Whether or not a wasabi in the field is still waiting for a nigiri
+	 */
+	private static boolean hasUnusedWasabi(final List<String> field) {
+		int numUnused = 0;
+		for (final String card : field) {
+			if (card.equals("W")) {
+				numUnused++;
+			} else if (card.endsWith("N") && numUnused > 0) {
+				numUnused--;
+			}
+		}
+
+		return numUnused > 0;
+	}
+
+	/**
+	 * @param weight
+	 *            The weight to keep in range
+	 * @return The weight, clamped to [-MAX_WEIGHT, MAX_WEIGHT]
+	 */
+	private static double clamp(final double weight) {
+		return Math.max(-MAX_WEIGHT, Math.min(MAX_WEIGHT, weight));
+	}
+}
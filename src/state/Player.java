@@ -14,7 +14,8 @@ import java.util.regex.Pattern;
  */
 public class Player {
 
-	private final List<String> hand;
+	// not final because hands are passed between players by reference
+	private List<String> hand;
 
 	// the field is kept in the order the cards are played to keep track of
 	// wasabi/nigiri combos
@@ -69,11 +70,10 @@ public class Player {
 
 	/**
 	 * @param newHand
-	 *            The hand to replace our hand with
+	 *            The hand this player now holds (the list itself, not a copy)
 	 */
-	void replaceHand(final List<String> newHand) {
-		this.hand.clear();
-		this.hand.addAll(newHand);
+	void takeHand(final List<String> newHand) {
+		this.hand = newHand;
 	}
 
 	/**
@@ -199,14 +199,14 @@ public class Player {
 	/**
 	 * @return This player's hand
 	 */
-	List<String> getHand() {
+	public List<String> getHand() {
 		return this.hand;
 	}
 
 	/**
 	 * @return The number of cards in this player's hand
 	 */
-	int getNumCardsInHand() {
+	public int getNumCardsInHand() {
 		return this.hand.size();
 	}
 
@@ -220,7 +220,7 @@ public class Player {
 	/**
 	 * @return This player's current score
 	 */
-	int getScore() {
+	public int getScore() {
 		return this.score;
 	}
 
@@ -0,0 +1,212 @@
+package state;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class converts game states to and from a single line of text so that
+ * positions can be saved and analyzed later. The format is
+ * 
+ * <pre>
+ * round ; scores ; hands ; fields ; deck
+ * </pre>
+ * 
+ * where scores are comma separated, hands and fields are separated by "|" (one
+ * per player, starting with the AI) with space separated cards, and the deck is
+ * space separated CARD=COUNT pairs. For example:
+ * 
+ * <pre>
+ * 2 ; 12,7 ; 2N W S|? ? ? ; P T|D ; T=10 S=9 D=12 2M=8 3M=6 1M=4 2N=7 3N=4 1N=3 P=8 W=4 C=3
+ * </pre>
+ * 
+ * A position is always at the start of a trick (every hand is the same size),
+ * and the AI's hand is always known.
+ * 
+ * @author Aaron Tetens
+ */
+public class Positions {
+
+	/**
+	 * @param line
+	 *            The position in the format described above
+	 * @return The game state of the position
+	 * @throws IllegalArgumentException
+	 *             If the line is not a valid position (including a position that
+	 *             could not come up in a game)
+	 */
+	public static SushiGoState parse(final String line) throws IllegalArgumentException {
+		final String[] sections = line.split(";");
+		if (sections.length != 5) {
+			throw new IllegalArgumentException("Tried to read a position with " + sections.length
+					+ " sections (round ; scores ; hands ; fields ; deck required)");
+		}
+
+		try {
+			final int currentRound = Integer.parseInt(sections[0].trim());
+			final String[] scores = sections[1].trim().split(",");
+			final String[] hands = sections[2].split("\\|", -1);
+			final String[] fields = sections[3].split("\\|", -1);
+
+			if (scores.length != hands.length || hands.length != fields.length) {
+				throw new IllegalArgumentException("Tried to read a position with a different number of scores ("
+						+ scores.length + "), hands (" + hands.length + ") and fields (" + fields.length + ")");
+			}
+
+			final Player[] players = new Player[hands.length];
+			for (int i = 0; i < players.length; i++) {
+				players[i] = new Player();
+				players[i].addScore(Integer.parseInt(scores[i].trim()));
+
+				for (final String card : splitCards(hands[i])) {
+					players[i].addCardToHand(card);
+				}
+
+				players[i].getField().addAll(splitCards(fields[i]));
+			}
+
+			final Map<String, Integer> deck = new HashMap<>();
+			for (final String entry : splitCards(sections[4])) {
+				final String[] cardAndCount = entry.split("=");
+				deck.put(cardAndCount[0], Integer.parseInt(cardAndCount[1]));
+			}
+
+			final SushiGoState state = new SushiGoState(players, new Deck(deck), currentRound);
+			validate(players, deck, currentRound);
+
+			return state;
+		} catch (final NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Tried to read an invalid position: " + line);
+		}
+	}
+
+	/**
+	 * @param players
+	 *            The players of the position (index 0 is the AI)
+	 * @param deck
+	 *            The number of each card left in the deck
+	 * @param currentRound
+	 *            The round that is currently being played
+	 * @throws IllegalArgumentException
+	 *             If the position could not come up in a game
+	 */
+	private static void validate(final Player[] players, final Map<String, Integer> deck, final int currentRound)
+			throws IllegalArgumentException {
+
+		final int numCardsPerPlayer = 12 - players.length;
+		final int numCardsInHand = players[0].getNumCardsInHand();
+
+		if (numCardsInHand < 1 || numCardsInHand > numCardsPerPlayer) {
+			throw new IllegalArgumentException("Tried to read a position where the AI holds " + numCardsInHand
+					+ " cards (1-" + numCardsPerPlayer + " required)");
+		}
+
+		// the AI plays first, so every hand is the same size at the start of a trick
+		for (int i = 1; i < players.length; i++) {
+			if (players[i].getNumCardsInHand() != numCardsInHand) {
+				throw new IllegalArgumentException("Tried to read a position where player " + i + " holds "
+						+ players[i].getNumCardsInHand() + " cards and the AI holds " + numCardsInHand
+						+ " (every hand must be the same size)");
+			}
+		}
+
+		if (players[0].getHand().contains("?")) {
+			throw new IllegalArgumentException("Tried to read a position where the AI's hand is not known");
+		}
+
+		// every card that can be seen has been drawn from the full deck
+		final Map<String, Integer> fullDeck = new Deck().getCards();
+		final Map<String, Integer> seen = new HashMap<>();
+		int numUnknownCards = 0;
+
+		for (final Player player : players) {
+			for (final String card : player.getHand()) {
+				if (card.equals("?")) {
+					numUnknownCards++;
+				} else {
+					seen.merge(card, 1, Integer::sum);
+				}
+			}
+
+			for (final String card : player.getField()) {
+				seen.merge(card, 1, Integer::sum);
+			}
+		}
+
+		for (final String card : seen.keySet()) {
+			if (!fullDeck.containsKey(card)) {
+				throw new IllegalArgumentException("Tried to read a position with " + card + " (not a card)");
+			}
+		}
+
+		int deckSize = 0;
+		for (final Map.Entry<String, Integer> entry : deck.entrySet()) {
+			final String card = entry.getKey();
+			final int count = entry.getValue();
+
+			if (!fullDeck.containsKey(card)) {
+				throw new IllegalArgumentException("Tried to read a deck with " + card + " (not a card)");
+			}
+
+			final int numSeen = seen.getOrDefault(card, 0);
+			if (count < 0 || count + numSeen > fullDeck.get(card)) {
+				throw new IllegalArgumentException("Tried to read a deck with " + count + " " + card + " ("
+						+ numSeen + " already seen, at most " + fullDeck.get(card) + " in the game)");
+			}
+
+			deckSize += count;
+		}
+
+		// the deck has to fill in the unknown cards and deal the rounds that are left
+		final int numCardsNeeded = numUnknownCards + (3 - currentRound) * players.length * numCardsPerPlayer;
+		if (deckSize < numCardsNeeded) {
+			throw new IllegalArgumentException("Tried to read a deck with " + deckSize + " cards (" + numCardsNeeded
+					+ " needed for the unknown cards and the rounds left)");
+		}
+	}
+
+	/**
+	 * @param state
+	 *            The game state to write
+	 * @return The position of the game state in the format described above
+	 */
+	public static String format(final SushiGoState state) {
+		final Player[] players = state.getPlayers();
+		final StringBuilder sb = new StringBuilder();
+
+		sb.append(state.getCurrentRound()).append(" ; ");
+
+		for (int i = 0; i < players.length; i++) {
+			sb.append(i == 0 ? "" : ",").append(players[i].getScore());
+		}
+
+		sb.append(" ;");
+		for (int i = 0; i < players.length; i++) {
+			sb.append(i == 0 ? " " : "|").append(String.join(" ", players[i].getHand()));
+		}
+
+		sb.append(" ;");
+		for (int i = 0; i < players.length; i++) {
+			sb.append(i == 0 ? " " : "|").append(String.join(" ", players[i].getField()));
+		}
+
+		sb.append(" ;");
+		for (final Map.Entry<String, Integer> entry : state.getDeck().getCards().entrySet()) {
+			sb.append(" ").append(entry.getKey()).append("=").append(entry.getValue());
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * @param cards
+	 *            Space separated cards
+	 * @return The cards (upper case)
+	 */
+	private static List<String> splitCards(final String cards) {
+		final String trimmed = cards.trim().toUpperCase();
+		return trimmed.isEmpty() ? new ArrayList<>() : Arrays.asList(trimmed.split("\\s+"));
+	}
+}
@@ -0,0 +1,22 @@
+package state;
+
+/**
+ * This interface scores the end of a round. Games are scored with
+ * {@link score.Scoring#updateScores} unless another scorer is set (used to
+ * score many self-play games at once).
+ * 
+ * @author Aaron Tetens
+ */
+public interface RoundScorer {
+
+	/**
+	 * Adds the points scored in the round that just ended to the players' scores
+	 * (their fields are cleared right after this is called).
+	 * 
+	 * @param players
+	 *            The players of the game
+	 * @param currentRound
+	 *            The round that just ended
+	 */
+	void scoreRound(Player[] players, int currentRound);
+}
@@ -0,0 +1,38 @@
+package state;
+
+import java.util.Scanner;
+
+/**
+ * This class reads the AI's cards from the console. Only the AI's own cards are
+ * known, so every other dealt card is unknown.
+ * 
+ * @author Aaron Tetens
+ */
+class ScannerCardInput implements CardInput {
+
+	private final Scanner in;
+
+	/**
+	 * @param in
+	 *            The Scanner to read the cards from
+	 */
+	ScannerCardInput(final Scanner in) {
+		this.in = in;
+	}
+
+	@Override
+	public String readDealtCard(final int player, final int cardNumber) {
+		if (player != 0) {
+			return "?";
+		}
+
+		System.out.print("Card " + cardNumber + ": ");
+		return this.in.nextLine().toUpperCase();
+	}
+
+	@Override
+	public String readRevealedCard() {
+		System.out.print("Unknown card: ");
+		return this.in.nextLine().toUpperCase();
+	}
+}
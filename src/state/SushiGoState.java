@@ -1,15 +1,19 @@
 package state;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 
 import api.GameState;
+import eval.Evaluator;
 import score.Scoring;
+import search.ChanceSeedable;
+import search.RewardMode;
+import search.Rewardable;
 
 /**
  * This class stores information about the current game state in a way that is
@@ -17,10 +21,17 @@ import score.Scoring;
  * 
  * @author Aaron Tetens
  */
-public class SushiGoState implements GameState {
+public class SushiGoState implements GameState, ChanceSeedable, Rewardable {
 
 	private static final int AI_INDEX = 0;
 
+	// puddings break ties, so each one is worth a fraction of a point when
+	// computing rewards
+	private static final double PUDDING_TIEBREAK = 1e-3;
+
+	// a margin this large over the best opponent is a reward of 1 (or 0 if behind)
+	private static final double MARGIN_SCALE = 30.0;
+
 	// maps number of players to number of cards dealt to each player
 	private static final Map<Integer, Integer> NUM_CARDS_PER_PLAYER = new HashMap<>();
 	static {
@@ -30,6 +41,18 @@ public class SushiGoState implements GameState {
 		NUM_CARDS_PER_PLAYER.put(5, 7);
 	}
 
+	// rollouts are cut off after this many tricks (or at the end of the round,
+	// whichever comes first) and scored with the evaluator, 0 means that rollouts
+	// are played to the end of the game
+	private static volatile int rolloutCutoff = 0;
+	private static volatile Evaluator rolloutEvaluator = new Evaluator();
+
+	// whether or not games read from input learn how each opponent plays, so that
+	// rollouts can play like them instead of at random
+	private static volatile boolean opponentModeling = false;
+
+	private static final RoundScorer DEFAULT_SCORER = Scoring::updateScores;
+
 	// index 0 represents the ai player
 	private final Player[] players;
 
@@ -37,6 +60,36 @@ public class SushiGoState implements GameState {
 
 	private int currentRound;
 
+	// the number of tricks played so far in the rollout this state belongs to (-1
+	// if this state is not part of a rollout)
+	private int rolloutTricks;
+
+	// whether or not the rollout this state belongs to has been cut off
+	private boolean truncated;
+
+	// the AI play that led to this state (only set by getNextStates)
+	private String lastAiPlay;
+
+	// notified of every deal, play and reveal (never copied, so simulations are
+	// not observed)
+	private GameObserver observer;
+
+	// scores the end of each round (never copied, so simulations are always scored
+	// with Scoring)
+	private RoundScorer roundScorer;
+
+	// the sample that chance events (unknown cards and deals) in this rollout are
+	// drawn from, see withChanceSample (random if chanceSeeded is false)
+	private boolean chanceSeeded;
+	private long chanceState;
+	private boolean antithetic;
+	private int firstDrawStratum;
+	private int numStrata;
+
+	// learned from the opponents' observed plays and shared by every copy of the
+	// state (null if opponents play at random in rollouts)
+	private final OpponentModel opponentModel;
+
 	/**
 	 * @param numPlayers
 	 *            The number of players, should be 2-5
@@ -47,6 +100,39 @@ public class SushiGoState implements GameState {
 	 *             If numPlayers or aiPlayer is not in the correct range
 	 */
 	public SushiGoState(final int numPlayers, final Scanner in) throws IllegalArgumentException {
+		this(numPlayers, in, null);
+	}
+
+	/**
+	 * @param numPlayers
+	 *            The number of players, should be 2-5
+	 * @param in
+	 *            The scanner the game should use to read in the cards that the AI
+	 *            receives
+	 * @param observer
+	 *            The observer to notify of everything that happens in the game, or
+	 *            null
+	 * @throws IllegalArgumentException
+	 *             If numPlayers is not in the correct range
+	 */
+	public SushiGoState(final int numPlayers, final Scanner in, final GameObserver observer)
+			throws IllegalArgumentException {
+		this(numPlayers, new ScannerCardInput(in), observer);
+	}
+
+	/**
+	 * @param numPlayers
+	 *            The number of players, should be 2-5
+	 * @param in
+	 *            The input the game should use to read in the dealt cards
+	 * @param observer
+	 *            The observer to notify of everything that happens in the game, or
+	 *            null
+	 * @throws IllegalArgumentException
+	 *             If numPlayers is not in the correct range
+	 */
+	public SushiGoState(final int numPlayers, final CardInput in, final GameObserver observer)
+			throws IllegalArgumentException {
 		if (numPlayers < 2 || numPlayers > 5) {
 			throw new IllegalArgumentException("Tried to start a game with " + numPlayers + " players (2-5 required)");
 		}
@@ -60,9 +146,44 @@ public class SushiGoState implements GameState {
 
 		this.currentRound = 1;
 
+		this.rolloutTricks = -1;
+		this.truncated = false;
+
+		this.lastAiPlay = null;
+		this.observer = observer;
+		this.roundScorer = DEFAULT_SCORER;
+
+		this.chanceSeeded = false;
+
+		this.opponentModel = opponentModeling ? new OpponentModel(numPlayers) : null;
+
 		this.dealFromInput(in);
 	}
 
+	private SushiGoState(final int numPlayers, final GameObserver observer) {
+		this.players = new Player[numPlayers];
+		for (int i = 0; i < numPlayers; i++) {
+			this.players[i] = new Player();
+		}
+
+		this.deck = new Deck();
+
+		this.currentRound = 1;
+
+		this.rolloutTricks = -1;
+		this.truncated = false;
+
+		this.lastAiPlay = null;
+		this.observer = observer;
+		this.roundScorer = DEFAULT_SCORER;
+
+		this.chanceSeeded = false;
+
+		this.opponentModel = null;
+
+		this.dealRandomly();
+	}
+
 	private SushiGoState(final SushiGoState state) {
 		this.players = new Player[state.players.length];
 		for (int i = 0; i < this.players.length; i++) {
@@ -72,6 +193,113 @@ public class SushiGoState implements GameState {
 		this.deck = new Deck(state.deck);
 
 		this.currentRound = state.currentRound;
+
+		this.rolloutTricks = state.rolloutTricks;
+		this.truncated = state.truncated;
+
+		this.lastAiPlay = state.lastAiPlay;
+		this.observer = null;
+		this.roundScorer = DEFAULT_SCORER;
+
+		this.chanceSeeded = state.chanceSeeded;
+		this.chanceState = state.chanceState;
+		this.antithetic = state.antithetic;
+		this.firstDrawStratum = state.firstDrawStratum;
+		this.numStrata = state.numStrata;
+
+		this.opponentModel = state.opponentModel;
+	}
+
+	/**
+	 * @param players
+	 *            The players of the position (index 0 is the AI)
+	 * @param deck
+	 *            The cards left in the deck
+	 * @param currentRound
+	 *            The round that is currently being played
+	 * @throws IllegalArgumentException
+	 *             If the number of players or the round is not in the correct range
+	 */
+	SushiGoState(final Player[] players, final Deck deck, final int currentRound) throws IllegalArgumentException {
+		if (players.length < 2 || players.length > 5) {
+			throw new IllegalArgumentException(
+					"Tried to start a game with " + players.length + " players (2-5 required)");
+		}
+
+		if (currentRound < 1 || currentRound > 3) {
+			throw new IllegalArgumentException("Tried to start a game in round " + currentRound + " (1-3 required)");
+		}
+
+		this.players = players;
+		this.deck = deck;
+
+		this.currentRound = currentRound;
+
+		this.rolloutTricks = -1;
+		this.truncated = false;
+
+		this.lastAiPlay = null;
+		this.observer = null;
+		this.roundScorer = DEFAULT_SCORER;
+
+		this.chanceSeeded = false;
+
+		this.opponentModel = null;
+	}
+
+	/**
+	 * @param numPlayers
+	 *            The number of players, should be 2-5
+	 * @return A new game where every player's hand is known and dealt at random
+	 *         (used for self-play)
+	 * @throws IllegalArgumentException
+	 *             If numPlayers is not in the correct range
+	 */
+	public static SushiGoState createRandomGame(final int numPlayers) throws IllegalArgumentException {
+		return createRandomGame(numPlayers, null);
+	}
+
+	/**
+	 * @param numPlayers
+	 *            The number of players, should be 2-5
+	 * @param observer
+	 *            The observer to notify of everything that happens in the game, or
+	 *            null
+	 * @return A new game where every player's hand is known and dealt at random
+	 *         (used for self-play)
+	 * @throws IllegalArgumentException
+	 *             If numPlayers is not in the correct range
+	 */
+	public static SushiGoState createRandomGame(final int numPlayers, final GameObserver observer)
+			throws IllegalArgumentException {
+
+		if (numPlayers < 2 || numPlayers > 5) {
+			throw new IllegalArgumentException("Tried to start a game with " + numPlayers + " players (2-5 required)");
+		}
+
+		return new SushiGoState(numPlayers, observer);
+	}
+
+	/**
+	 * @param numTricks
+	 *            The number of tricks a rollout plays before it is scored with the
+	 *            evaluator (rollouts also stop at the end of the round they are
+	 *            in), or 0 to play every rollout to the end of the game
+	 * @param evaluator
+	 *            The evaluator used to score rollouts that are cut off
+	 */
+	public static void setRolloutCutoff(final int numTricks, final Evaluator evaluator) {
+		rolloutEvaluator = evaluator;
+		rolloutCutoff = Math.max(0, numTricks);
+	}
+
+	/**
+	 * @param enabled
+	 *            Whether or not games read from input (created after this call)
+	 *            should learn how each opponent plays and use it in rollouts
+	 */
+	public static void setOpponentModeling(final boolean enabled) {
+		opponentModeling = enabled;
 	}
 
 	/**
@@ -81,6 +309,8 @@ public class SushiGoState implements GameState {
 	 *            The Scanner that this method uses to read the human moves
 	 */
 	public void getHumanPlayersMoves(final Scanner in) {
+		final CardInput cardInput = new ScannerCardInput(in);
+
 		for (int i = 1; i < this.players.length; i++) {
 			String cards = null;
 			boolean tryAgain = true;
@@ -92,7 +322,7 @@ public class SushiGoState implements GameState {
 				cards = in.nextLine().toUpperCase();
 
 				try {
-					this.makeMove(cards, i, false, in);
+					this.makeMove(cards, i, false, cardInput);
 				} catch (final IllegalArgumentException e) {
 					tryAgain = true;
 				}
@@ -101,23 +331,90 @@ public class SushiGoState implements GameState {
 		}
 	}
 
+	/**
+	 * This method performs a play that was observed in a real game.
+	 * 
+	 * @param player
+	 *            The index of the player that played
+	 * @param cards
+	 *            The cards that were played, separated by a space
+	 * @param in
+	 *            The input to read any revealed or newly dealt cards from
+	 * @throws IllegalArgumentException
+	 *             If the play is not valid
+	 */
+	public void playCards(final int player, final String cards, final CardInput in) throws IllegalArgumentException {
+		this.makeMove(cards, player, false, in);
+	}
+
+	/**
+	 * Makes every player do a random play (used for self-play, every hand must be
+	 * known).
+	 */
+	public void playRandomTrick() {
+		for (int i = 0; i < this.players.length; i++) {
+			this.doRandomPlay(i);
+		}
+	}
+
+	/**
+	 * @return A copy of this state (the observer and round scorer are not copied)
+	 */
+	public SushiGoState copy() {
+		return new SushiGoState(this);
+	}
+
+	/**
+	 * @param observer
+	 *            The observer to notify of everything that happens from now on, or
+	 *            null
+	 */
+	public void setObserver(final GameObserver observer) {
+		this.observer = observer;
+	}
+
+	/**
+	 * @param roundScorer
+	 *            The scorer to score the end of every round from now on, or null
+	 *            to score with {@link Scoring#updateScores}
+	 */
+	public void setRoundScorer(final RoundScorer roundScorer) {
+		this.roundScorer = roundScorer == null ? DEFAULT_SCORER : roundScorer;
+	}
+
+	/**
+	 * @return The cards the AI played to reach this state from its parent in the
+	 *         search tree, separated by a space (null if this state was not
+	 *         generated by the search)
+	 */
+	public String getLastAiPlay() {
+		return this.lastAiPlay;
+	}
+
 	/**
 	 * @param in
-	 *            The Scanner that this method should use to read what cards we
+	 *            The input that this method should use to read what cards we
 	 *            received if any were previously unknown
 	 */
-	private void rotateHands(final Scanner in) {
-		for (int i = 1; i < this.players.length; i++) {
-			final List<String> temp = new ArrayList<>(this.players[AI_INDEX].getHand());
-			this.players[AI_INDEX].replaceHand(this.players[i].getHand());
-			this.players[i].replaceHand(temp);
+	private void rotateHands(final CardInput in) {
+		// every player passes their hand to the next player (and the last player to the
+		// AI), which only moves the references to the hand lists
+		final List<String> lastHand = this.players[this.players.length - 1].getHand();
+
+		for (int i = this.players.length - 1; i > 0; i--) {
+			this.players[i].takeHand(this.players[i - 1].getHand());
 		}
 
+		this.players[AI_INDEX].takeHand(lastHand);
+
 		while (this.players[AI_INDEX].getHand().contains("?")) {
-			System.out.print("Unknown card: ");
-			final String newCard = in.nextLine().toUpperCase();
+			final String newCard = in.readRevealedCard();
 			this.deck.drawCard(newCard);
 			this.players[AI_INDEX].replaceUnknownCard(newCard);
+
+			if (this.observer != null) {
+				this.observer.onReveal(newCard);
+			}
 		}
 	}
 
@@ -132,7 +429,50 @@ public class SushiGoState implements GameState {
 	 *            Whether or not the deck should be dealt randomly in the event of a
 	 *            deal occurring after the end of the round
 	 * @param in
-	 *            The Scanner that this method should use to obtain which cards the
+	 *            The input that this method should use to obtain which cards the
+	 *            AI drew in the event of a deal occurring after the end of the
+	 *            round (this value doesn't matter if dealRandomly is true), or if
+	 *            the hands get rotated and we receive cards that were previously
+	 *            unknown
+	 * @throws IllegalArgumentException
+	 *             If the provided card does not match any of the valid cards
+	 */
+	private void makeMove(final String cardsPlayed, final int playerIndex, final boolean dealRandomly,
+			final CardInput in)
+			throws IllegalArgumentException {
+
+		// plays in the real game teach the model how this opponent plays (the hand and
+		// field are saved first, and the play is only observed once the whole move has
+		// gone through, so a rejected play never reaches the model)
+		final boolean observed = this.opponentModel != null && this.rolloutTricks < 0 && playerIndex != AI_INDEX;
+		final List<String> offeredHand = observed ? new ArrayList<>(this.players[playerIndex].getHand()) : null;
+		final List<String> field = observed ? new ArrayList<>(this.players[playerIndex].getField()) : null;
+
+		this.applyMove(cardsPlayed, playerIndex, dealRandomly, in);
+
+		if (observed) {
+			for (final String card : cardsPlayed.split(" ")) {
+				this.opponentModel.observe(playerIndex, offeredHand, field, card);
+
+				offeredHand.remove(offeredHand.contains(card) ? card : "?");
+				field.add(card);
+			}
+		}
+	}
+
+	/**
+	 * This method makes the current player put down the specified card (without
+	 * teaching the opponent model)
+	 * 
+	 * @param cardsPlayed
+	 *            The cards to play
+	 * @param player
+	 *            The index of the player playing the card
+	 * @param dealRandomly
+	 *            Whether or not the deck should be dealt randomly in the event of a
+	 *            deal occurring after the end of the round
+	 * @param in
+	 *            The input that this method should use to obtain which cards the
 	 *            AI drew in the event of a deal occurring after the end of the
 	 *            round (this value doesn't matter if dealRandomly is true), or if
 	 *            the hands get rotated and we receive cards that were previously
@@ -140,7 +480,8 @@ public class SushiGoState implements GameState {
 	 * @throws IllegalArgumentException
 	 *             If the provided card does not match any of the valid cards
 	 */
-	private void makeMove(final String cardsPlayed, final int playerIndex, final boolean dealRandomly, final Scanner in)
+	private void applyMove(final String cardsPlayed, final int playerIndex, final boolean dealRandomly,
+			final CardInput in)
 			throws IllegalArgumentException {
 
 		final String[] cards = cardsPlayed.split(" ");
@@ -154,6 +495,10 @@ public class SushiGoState implements GameState {
 			throw e;
 		}
 
+		if (this.observer != null) {
+			this.observer.onPlay(playerIndex, cardsPlayed);
+		}
+
 		// if everyone has played a card, rotate the hands
 		boolean rotateHands = true;
 
@@ -167,16 +512,24 @@ public class SushiGoState implements GameState {
 
 		if (rotateHands) {
 			this.rotateHands(in);
+
+			if (this.rolloutTricks >= 0) {
+				this.rolloutTricks++;
+			}
 		}
 
 		// if the round is not over, then we are done
 		if (!this.isRoundOver()) {
+			if (this.rolloutTricks >= rolloutCutoff && rolloutCutoff > 0) {
+				this.truncated = true;
+			}
+
 			return;
 		}
 
 		// if the round is over, update the score and prepare the
 		// next round if there is one
-		Scoring.updateScores(this.players, this.currentRound);
+		this.roundScorer.scoreRound(this.players, this.currentRound);
 
 		if (this.currentRound < 3) {
 			this.currentRound++;
@@ -185,6 +538,12 @@ public class SushiGoState implements GameState {
 				player.clearField();
 			}
 
+			// rollouts never deal another round when they are being cut off
+			if (this.rolloutTricks >= 0 && rolloutCutoff > 0) {
+				this.truncated = true;
+				return;
+			}
+
 			if (dealRandomly) {
 				this.dealRandomly();
 			} else {
@@ -211,38 +570,44 @@ public class SushiGoState implements GameState {
 	 * that each player receives depends on the number of players in the game.
 	 * 
 	 * @param in
-	 *            The Scanner that this method should use to obtain which cards the
-	 *            AI drew
+	 *            The input that this method should use to obtain which cards each
+	 *            player drew
 	 */
-	private void dealFromInput(final Scanner in) {
+	private void dealFromInput(final CardInput in) {
 		final int numCardsPerPlayer = NUM_CARDS_PER_PLAYER.get(this.players.length);
 
 		// give the AI its cards first
-		for (int i = 1; i <= numCardsPerPlayer; i++) {
-			String card = null;
-			boolean tryAgain = true;
+		for (int player = 0; player < this.players.length; player++) {
+			for (int i = 1; i <= numCardsPerPlayer; i++) {
+				String card = null;
+				boolean tryAgain = true;
 
-			while (tryAgain) {
-				tryAgain = false;
+				while (tryAgain) {
+					tryAgain = false;
 
-				System.out.print("Card " + i + ": ");
-				card = in.nextLine().toUpperCase();
+					card = in.readDealtCard(player, i);
 
-				try {
-					this.deck.drawCard(card);
-				} catch (final IllegalArgumentException e) {
-					System.out.println(e.getMessage());
-					tryAgain = true;
-					continue;
-				}
+					// only the other players can be dealt unknown cards
+					if (player != AI_INDEX && card.equals("?")) {
+						this.players[player].addUnknownCardsToHand(1);
+						continue;
+					}
+
+					try {
+						this.deck.drawCard(card);
+					} catch (final IllegalArgumentException e) {
+						System.out.println(e.getMessage());
+						tryAgain = true;
+						continue;
+					}
 
-				this.players[AI_INDEX].addCardToHand(card);
+					this.players[player].addCardToHand(card);
+				}
 			}
-		}
 
-		// deal unknown cards to the rest of the players
-		for (int i = 1; i < this.players.length; i++) {
-			this.players[i].addUnknownCardsToHand(numCardsPerPlayer);
+			if (this.observer != null) {
+				this.observer.onDeal(player, new ArrayList<>(this.players[player].getHand()));
+			}
 		}
 	}
 
@@ -250,9 +615,15 @@ public class SushiGoState implements GameState {
 	 * This method deals the cards to the players randomly (used for simulation).
 	 */
 	private void dealRandomly() {
-		for (final Player player : this.players) {
+		for (int i = 0; i < this.players.length; i++) {
+			final Player player = this.players[i];
+
 			while (player.getNumCardsInHand() < NUM_CARDS_PER_PLAYER.get(this.players.length)) {
-				player.addCardToHand(this.deck.drawRandomCard());
+				player.addCardToHand(this.deck.drawRandomCard(this.nextChance()));
+			}
+
+			if (this.observer != null) {
+				this.observer.onDeal(i, new ArrayList<>(player.getHand()));
 			}
 		}
 	}
@@ -276,21 +647,14 @@ public class SushiGoState implements GameState {
 		}
 
 		// generate a state for each possible play
-		final Set<String> alreadyProcessed = new HashSet<>();
-
-		// one card plays
-		for (final String card : this.players[AI_INDEX].getHand()) {
-			// skip duplicates
-			if (alreadyProcessed.contains(card)) {
-				continue;
-			}
-
+		for (final String play : this.getLegalPlays(AI_INDEX)) {
 			final SushiGoState nextState = new SushiGoState(this);
 
 			try {
 				// the round can't end in this method, so the values of dealRandomly and in
 				// don't matter
-				nextState.makeMove(card, AI_INDEX, false, null);
+				nextState.makeMove(play, AI_INDEX, false, null);
+				nextState.lastAiPlay = play;
 			} catch (final IllegalArgumentException e) {
 				System.out.println("Error during next state generation");
 				System.out.println(e.getMessage());
@@ -298,56 +662,45 @@ public class SushiGoState implements GameState {
 			}
 
 			nextStates.add(nextState);
-			alreadyProcessed.add(card);
 		}
 
-		// two card plays (if we have chopsticks)
-		// the ordering of i and j matter because of wasabi/nigiri orderings
-		if (this.players[AI_INDEX].getField().contains("C")) {
-			for (int i = 0; i < this.players[AI_INDEX].getNumCardsInHand(); i++) {
-				for (int j = 0; j < this.players[AI_INDEX].getNumCardsInHand(); j++) {
-					if (i != j) {
-						final String card1 = this.players[AI_INDEX].getHand().get(i);
-						final String card2 = this.players[AI_INDEX].getHand().get(j);
-						final String play = card1 + " " + card2;
-
-						// skip duplicates
-						if (alreadyProcessed.contains(play)) {
-							continue;
-						}
-
-						final SushiGoState nextState = new SushiGoState(this);
-
-						try {
-							// the round can't end in this method, so the values of dealRandomly and in
-							// don't matter
-							nextState.makeMove(play, AI_INDEX, true, null);
-						} catch (final IllegalArgumentException e) {
-							System.out.println("Error during next state generation");
-							System.out.println(e.getMessage());
-							System.exit(1);
-						}
+		return nextStates;
+	}
 
-						nextStates.add(nextState);
-						alreadyProcessed.add(play);
-					}
-				}
-			}
-		}
+	/**
+	 * @param player
+	 *            The index of the player
+	 * @return Every distinct play the player can make from their hand (one card
+	 *         plays first, then two card plays if they have chopsticks), which
+	 *         can not be modified
+	 */
+	public List<String> getLegalPlays(final int player) {
+		return this.getMoveTable(player).getPlays();
+	}
 
-		return nextStates;
+	/**
+	 * @param player
+	 *            The index of the player
+	 * @return The table of plays for the player's hand
+	 */
+	private MoveTable getMoveTable(final int player) {
+		return MoveTable.get(this.players[player].getHand(), this.players[player].getField().contains("C"));
 	}
 
 	@Override
 	public GameState getRandomNextState() {
 		final SushiGoState copy = new SushiGoState(this);
 
+		if (copy.rolloutTricks < 0) {
+			copy.rolloutTricks = 0;
+		}
+
 		// if this is the start of the simulation, randomly replace unknown cards with
 		// cards from the deck and make each human player do a random play
 		if (copy.players[AI_INDEX].getNumCardsInHand() < copy.players[AI_INDEX + 1].getNumCardsInHand()) {
 			for (final Player player : copy.players) {
 				while (player.getHand().contains("?")) {
-					player.replaceUnknownCard(copy.deck.drawRandomCard());
+					player.replaceUnknownCard(copy.deck.drawRandomCard(copy.nextChance()));
 				}
 			}
 
@@ -367,35 +720,145 @@ public class SushiGoState implements GameState {
 		return copy;
 	}
 
+	@Override
+	public GameState withChanceSample(final long seed, final boolean antithetic, final int stratum,
+			final int numStrata) {
+
+		final SushiGoState copy = new SushiGoState(this);
+
+		copy.chanceSeeded = true;
+		copy.chanceState = seed;
+		copy.antithetic = antithetic;
+		copy.firstDrawStratum = stratum;
+		copy.numStrata = numStrata;
+
+		return copy;
+	}
+
+	/**
+	 * @return The next random value for a chance event, in [0, 1] (the deck treats
+	 *         1 like a value just below it)
+	 */
+	private double nextChance() {
+		if (!this.chanceSeeded) {
+			return ThreadLocalRandom.current().nextDouble();
+		}
+
+		// splitmix64
+		this.chanceState += 0x9E3779B97F4A7C15L;
+
+		long z = this.chanceState;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z ^= z >>> 31;
+
+		double random = (z >>> 11) * 0x1.0p-53;
+
+		// the first draw of the rollout is spread evenly over the strata
+		if (this.firstDrawStratum >= 0) {
+			random = (this.firstDrawStratum + random) / this.numStrata;
+			this.firstDrawStratum = -1;
+		}
+
+		return this.antithetic ? 1.0 - random : random;
+	}
+
 	/**
 	 * @param player
 	 *            The player to perform the random move
 	 */
 	private void doRandomPlay(final int player) {
-		final List<String> plays = new ArrayList<>();
+		// opponents play like the model says they do
+		if (this.opponentModel != null && player != AI_INDEX) {
+			this.doModeledPlay(player);
+			return;
+		}
 
-		// one card plays
-		plays.addAll(this.players[player].getHand());
+		final List<String> hand = this.players[player].getHand();
+		final int numCards = hand.size();
+
+		// every card (or ordered pair of different cards with chopsticks) is equally
+		// likely, so one is picked by index instead of listing every play
+		final boolean hasChopsticks = this.players[player].getField().contains("C");
+		final int numWays = numCards + (hasChopsticks ? numCards * (numCards - 1) : 0);
+		final int randomWay = ThreadLocalRandom.current().nextInt(numWays);
+
+		final String play;
+		if (randomWay < numCards) {
+			play = hand.get(randomWay);
+		} else {
+			final int pair = randomWay - numCards;
+			final int first = pair / (numCards - 1);
+			final int second = pair % (numCards - 1);
+
+			// skip the first card when picking the second
+			play = hand.get(first) + " " + hand.get(second < first ? second : second + 1);
+		}
 
-		// two card plays (only available if player has chopsticks in their field)
-		// the ordering of i and j matter because of wasabi/nigiri orderings
-		if (this.players[player].getField().contains("C")) {
-			for (int i = 0; i < this.players[player].getNumCardsInHand(); i++) {
-				for (int j = 0; j < this.players[player].getNumCardsInHand(); j++) {
-					if (i != j) {
-						final String card1 = this.players[player].getHand().get(i);
-						final String card2 = this.players[player].getHand().get(j);
+		try {
+			this.makeMove(play, player, true, null);
+		} catch (final IllegalArgumentException e) {
+			System.out.println("Error during simulation");
+			System.out.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * This method picks the same plays as doRandomPlay, but weights each one by the
+	 * opponent model (a two card play is weighted by the product of its cards).
+	 * 
+	 * @param player
+	 *            The opponent to perform the move
+	 */
+	private void doModeledPlay(final int player) {
+		final List<String> hand = this.players[player].getHand();
+		final List<String> field = this.players[player].getField();
+		final boolean hasChopsticks = field.contains("C");
+
+		final double[] weights = new double[hand.size()];
+		double weightSum = 0.0;
+		double weightSquareSum = 0.0;
+
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = this.opponentModel.getWeight(player, hand.get(i), field);
+			weightSum += weights[i];
+			weightSquareSum += weights[i] * weights[i];
+		}
 
-						plays.add(card1 + " " + card2);
+		// the ordered pairs of different cards add up to sum^2 - sum of squares
+		final double totalWeight = weightSum + (hasChopsticks ? weightSum * weightSum - weightSquareSum : 0.0);
+		double random = ThreadLocalRandom.current().nextDouble() * totalWeight;
+
+		// one card plays (also the fallback for rounding errors)
+		String play = null;
+		for (int i = 0; i < weights.length && play == null; i++) {
+			if (random < weights[i]) {
+				play = hand.get(i);
+			}
+			random -= weights[i];
+		}
+
+		// two card plays
+		if (hasChopsticks) {
+			for (int i = 0; i < weights.length && play == null; i++) {
+				for (int j = 0; j < weights.length && play == null; j++) {
+					if (i != j) {
+						if (random < weights[i] * weights[j]) {
+							play = hand.get(i) + " " + hand.get(j);
+						}
+						random -= weights[i] * weights[j];
 					}
 				}
 			}
 		}
 
-		final int randomIndex = (int) (Math.random() * plays.size());
+		if (play == null) {
+			play = hand.get(hand.size() - 1);
+		}
 
 		try {
-			this.makeMove(plays.get(randomIndex), player, true, null);
+			this.makeMove(play, player, true, null);
 		} catch (final IllegalArgumentException e) {
 			System.out.println("Error during simulation");
 			System.out.println(e.getMessage());
@@ -405,17 +868,113 @@ public class SushiGoState implements GameState {
 
 	@Override
 	public List<Integer> getWinningPlayers() {
-		final List<Integer> winningPlayers = new ArrayList<>();
+		if (!this.isGameOver()) {
+			return Collections.emptyList();
+		}
+
+		if (this.truncated) {
+			return this.getWinningPlayers(rolloutEvaluator.estimateFinalScores(this.players, this.currentRound));
+		}
+
+		final double[] scores = new double[this.players.length];
+		for (int i = 0; i < this.players.length; i++) {
+			scores[i] = this.players[i].getScore();
+		}
+
+		return this.getWinningPlayers(scores);
+	}
+
+	@Override
+	public boolean isGameOver() {
+		return this.truncated || (this.currentRound == 3 && this.players[AI_INDEX].isHandEmpty());
+	}
 
-		if (this.currentRound < 3 || !this.players[AI_INDEX].isHandEmpty()) {
-			return winningPlayers;
+	@Override
+	public int getNumPlayers() {
+		return this.players.length;
+	}
+
+	@Override
+	public void getRewards(final RewardMode mode, final double[] rewards) {
+		final int numPlayers = this.players.length;
+
+		// final (or estimated) scores, with puddings breaking ties
+		if (this.truncated) {
+			rolloutEvaluator.estimateFinalScores(this.players, this.currentRound, rewards);
+		} else {
+			for (int i = 0; i < numPlayers; i++) {
+				rewards[i] = this.players[i].getScore();
+			}
+		}
+
+		double best = Double.NEGATIVE_INFINITY;
+		double secondBest = Double.NEGATIVE_INFINITY;
+		int numBest = 0;
+
+		for (int i = 0; i < numPlayers; i++) {
+			rewards[i] += PUDDING_TIEBREAK * this.players[i].getNumPuddings();
+
+			if (rewards[i] > best) {
+				secondBest = best;
+				best = rewards[i];
+				numBest = 1;
+			} else if (rewards[i] == best) {
+				numBest++;
+			} else if (rewards[i] > secondBest) {
+				secondBest = rewards[i];
+			}
+		}
+
+		switch (mode) {
+		case WIN_LOSS:
+			for (int i = 0; i < numPlayers; i++) {
+				rewards[i] = rewards[i] == best ? 1.0 / numBest : 0.0;
+			}
+			break;
+		case SCORE_MARGIN:
+			for (int i = 0; i < numPlayers; i++) {
+				final double bestOpponent = rewards[i] == best && numBest == 1 ? secondBest : best;
+				final double margin = 0.5 + (rewards[i] - bestOpponent) / (2 * MARGIN_SCALE);
+
+				rewards[i] = Math.max(0.0, Math.min(1.0, margin));
+			}
+			break;
+		case RANK:
+			// twice the number of opponents beaten (ties count once) fits in 4 bits per
+			// player, so every rank is packed into one long before overwriting the scores
+			long packed = 0;
+			for (int i = 0; i < numPlayers; i++) {
+				long beaten = 0;
+				for (int j = 0; j < numPlayers; j++) {
+					if (j != i) {
+						beaten += rewards[i] > rewards[j] ? 2 : rewards[i] == rewards[j] ? 1 : 0;
+					}
+				}
+
+				packed |= beaten << (4 * i);
+			}
+
+			for (int i = 0; i < numPlayers; i++) {
+				rewards[i] = ((packed >>> (4 * i)) & 0xF) / (2.0 * (numPlayers - 1));
+			}
+			break;
 		}
+	}
+
+	/**
+	 * @param scores
+	 *            The (possibly estimated) final score of each player
+	 * @return The players with the best score, ties are broken by the number of
+	 *         puddings
+	 */
+	private List<Integer> getWinningPlayers(final double[] scores) {
+		final List<Integer> winningPlayers = new ArrayList<>();
 
-		int scoreOfBest = -1;
+		double scoreOfBest = Double.NEGATIVE_INFINITY;
 		int numPuddingsOfBest = -1;
 
 		for (int i = 0; i < this.players.length; i++) {
-			final int score = this.players[i].getScore();
+			final double score = scores[i];
 			final int numPuddings = this.players[i].getNumPuddings();
 
 			if (score > scoreOfBest) {
@@ -439,6 +998,27 @@ public class SushiGoState implements GameState {
 		return winningPlayers;
 	}
 
+	/**
+	 * @return The players in this game (index 0 is the AI)
+	 */
+	public Player[] getPlayers() {
+		return this.players;
+	}
+
+	/**
+	 * @return The cards left in the deck
+	 */
+	Deck getDeck() {
+		return this.deck;
+	}
+
+	/**
+	 * @return The round that is currently being played
+	 */
+	public int getCurrentRound() {
+		return this.currentRound;
+	}
+
 	@Override
 	public String toString() {
 		final StringBuilder sb = new StringBuilder();